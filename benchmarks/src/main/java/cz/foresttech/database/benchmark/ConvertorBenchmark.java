@@ -0,0 +1,148 @@
+package cz.foresttech.database.benchmark;
+
+import cz.foresttech.database.DBRow;
+import cz.foresttech.database.DatabaseAPI;
+import cz.foresttech.database.DatabaseEntityConvertor;
+import cz.foresttech.database.benchmark.entity.CollectionEntity;
+import cz.foresttech.database.benchmark.entity.InheritedEntity;
+import cz.foresttech.database.benchmark.entity.PrimitiveEntity;
+import cz.foresttech.database.benchmark.entity.TextEntity;
+import cz.foresttech.database.benchmark.entity.WideEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures conversion of database rows to entities and of entities to statement parameters.
+ * Run with {@code -prof gc} to see the allocation rate of each conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertorBenchmark {
+
+    private DatabaseEntityConvertor convertor;
+
+    private DBRow primitiveRow;
+    private DBRow textRow;
+    private DBRow collectionRow;
+    private DBRow wideRow;
+    private DBRow inheritedRow;
+
+    private PrimitiveEntity primitiveEntity;
+    private TextEntity textEntity;
+    private CollectionEntity collectionEntity;
+    private WideEntity wideEntity;
+    private InheritedEntity inheritedEntity;
+
+    @Setup
+    public void setup() {
+        // No plugin is needed, only the conversion is measured
+        DatabaseAPI databaseAPI = new DatabaseAPI(null);
+        databaseAPI.setup();
+        convertor = databaseAPI.getDatabaseEntityConvertor();
+
+        // Cells hold the types returned by the PostgreSQL driver
+        primitiveRow = new DBRow();
+        primitiveRow.addCell("id", 42L);
+        primitiveRow.addCell("level", 17);
+        primitiveRow.addCell("balance", 1250.75);
+        primitiveRow.addCell("online", true);
+        primitiveRow.addCell("ratio", 0.5f);
+
+        textRow = new DBRow();
+        textRow.addCell("uuid", UUID.fromString("4f3c2a1e-9b8d-4c7e-a6f5-1d2c3b4a5e6f"));
+        textRow.addCell("name", "ForestPlayer");
+        textRow.addCell("description", "A player description which is long enough to be stored in a TEXT column");
+        textRow.addCell("rank", "VIP");
+
+        collectionRow = new DBRow();
+        collectionRow.addCell("id", 7);
+        collectionRow.addCell("permissions", "forest.chat;forest.home;forest.warp;forest.kit.vip");
+        collectionRow.addCell("settings", "language:cs;scoreboard:true;particles:false");
+
+        wideRow = new DBRow();
+        wideRow.addCell("id", 1L);
+        for (int i = 1; i < WideEntity.COLUMNS; i++) {
+            wideRow.addCell("column" + i, i % 2 == 1 ? (Object) (long) i : "value " + i);
+        }
+
+        inheritedRow = new DBRow();
+        inheritedRow.addCell("id", 99L);
+        inheritedRow.addCell("created_at", new Timestamp(1_700_000_000_000L));
+        inheritedRow.addCell("updated_at", new Timestamp(1_700_000_100_000L));
+        inheritedRow.addCell("owner", "ForestTech");
+        inheritedRow.addCell("members", 12);
+
+        primitiveEntity = convertor.convertToEntity(PrimitiveEntity.class, primitiveRow);
+        textEntity = convertor.convertToEntity(TextEntity.class, textRow);
+        collectionEntity = convertor.convertToEntity(CollectionEntity.class, collectionRow);
+        wideEntity = convertor.convertToEntity(WideEntity.class, wideRow);
+        inheritedEntity = convertor.convertToEntity(InheritedEntity.class, inheritedRow);
+    }
+
+    @Benchmark
+    public PrimitiveEntity convertPrimitives() {
+        return convertor.convertToEntity(PrimitiveEntity.class, primitiveRow);
+    }
+
+    @Benchmark
+    public TextEntity convertStringsUuidEnum() {
+        return convertor.convertToEntity(TextEntity.class, textRow);
+    }
+
+    @Benchmark
+    public CollectionEntity convertListAndMap() {
+        return convertor.convertToEntity(CollectionEntity.class, collectionRow);
+    }
+
+    @Benchmark
+    public WideEntity convertWide() {
+        return convertor.convertToEntity(WideEntity.class, wideRow);
+    }
+
+    @Benchmark
+    public InheritedEntity convertInherited() {
+        return convertor.convertToEntity(InheritedEntity.class, inheritedRow);
+    }
+
+    @Benchmark
+    public Object[] parametersPrimitives() {
+        return convertor.insertOrUpdateParameters(PrimitiveEntity.class, primitiveEntity);
+    }
+
+    @Benchmark
+    public Object[] parametersStringsUuidEnum() {
+        return convertor.insertOrUpdateParameters(TextEntity.class, textEntity);
+    }
+
+    @Benchmark
+    public Object[] parametersListAndMap() {
+        return convertor.insertOrUpdateParameters(CollectionEntity.class, collectionEntity);
+    }
+
+    @Benchmark
+    public Object[] parametersWide() {
+        return convertor.insertOrUpdateParameters(WideEntity.class, wideEntity);
+    }
+
+    @Benchmark
+    public Object[] parametersInherited() {
+        return convertor.insertOrUpdateParameters(InheritedEntity.class, inheritedEntity);
+    }
+
+}
@@ -0,0 +1,74 @@
+package cz.foresttech.database.benchmark;
+
+import cz.foresttech.database.DBRow;
+import cz.foresttech.database.DBRowSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creating rows with a shared schema and reading their cells by name and by index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DBRowBenchmark {
+
+    private static final int COLUMNS = 16;
+
+    private String[] names;
+    private DBRowSchema schema;
+    private DBRow row;
+
+    @Setup
+    public void setup() {
+        names = new String[COLUMNS];
+        schema = DBRowSchema.empty();
+        Object[] cells = new Object[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            names[i] = "column_" + i;
+            schema = schema.with(names[i]);
+            cells[i] = i % 2 == 0 ? (Object) (long) i : "value " + i;
+        }
+        row = new DBRow(schema, cells);
+    }
+
+    @Benchmark
+    public DBRow createRow() {
+        Object[] cells = new Object[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            cells[i] = row.getObject(i);
+        }
+        return new DBRow(schema, cells);
+    }
+
+    @Benchmark
+    public void readByName(Blackhole blackhole) {
+        for (int i = 0; i < COLUMNS; i += 2) {
+            blackhole.consume(row.getLongPrimitive(names[i]));
+            blackhole.consume(row.getString(names[i + 1]));
+        }
+    }
+
+    @Benchmark
+    public void readByIndex(Blackhole blackhole) {
+        for (int i = 0; i < COLUMNS; i += 2) {
+            blackhole.consume(row.getLongPrimitive(i));
+            blackhole.consume(row.getString(i + 1));
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package cz.foresttech.database.benchmark;
+
+import cz.foresttech.database.DatabaseAPI;
+import cz.foresttech.database.DatabaseEntityConvertor;
+import cz.foresttech.database.EntityMetadata;
+import cz.foresttech.database.benchmark.entity.InheritedEntity;
+import cz.foresttech.database.benchmark.entity.TextEntity;
+import cz.foresttech.database.benchmark.entity.WideEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures SQL generation. Scripts are cached per entity class, so the script benchmarks measure the cached
+ * lookup, while the metadata benchmarks measure the one-time inspection of an entity class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptBenchmark {
+
+    private DatabaseEntityConvertor convertor;
+
+    @Setup
+    public void setup() {
+        DatabaseAPI databaseAPI = new DatabaseAPI(null);
+        databaseAPI.setup();
+        convertor = databaseAPI.getDatabaseEntityConvertor();
+    }
+
+    @Benchmark
+    public String upsertScript() {
+        return convertor.insertOrUpdateScript(WideEntity.class);
+    }
+
+    @Benchmark
+    public String deleteScript() {
+        return convertor.deleteScript(WideEntity.class);
+    }
+
+    @Benchmark
+    public String createScript() {
+        return convertor.generateCreateScript(WideEntity.class);
+    }
+
+    @Benchmark
+    public EntityMetadata metadataWide() {
+        convertor.invalidateMetadata();
+        return convertor.getMetadata(WideEntity.class);
+    }
+
+    @Benchmark
+    public EntityMetadata metadataStringsUuidEnum() {
+        convertor.invalidateMetadata();
+        return convertor.getMetadata(TextEntity.class);
+    }
+
+    @Benchmark
+    public EntityMetadata metadataInherited() {
+        convertor.invalidateMetadata();
+        return convertor.getMetadata(InheritedEntity.class);
+    }
+
+}
@@ -0,0 +1,20 @@
+package cz.foresttech.database.benchmark.entity;
+
+import cz.foresttech.database.annotation.Column;
+import cz.foresttech.database.annotation.PrimaryKey;
+
+import java.sql.Timestamp;
+
+public abstract class BaseEntity {
+
+    @Column
+    @PrimaryKey
+    protected long id;
+
+    @Column
+    protected Timestamp createdAt;
+
+    @Column
+    protected Timestamp updatedAt;
+
+}
@@ -0,0 +1,32 @@
+package cz.foresttech.database.benchmark.entity;
+
+import cz.foresttech.database.annotation.Column;
+import cz.foresttech.database.annotation.DatabaseEntity;
+import cz.foresttech.database.annotation.PrimaryKey;
+
+import java.util.List;
+import java.util.Map;
+
+@DatabaseEntity
+public class CollectionEntity {
+
+    @Column
+    @PrimaryKey
+    private int id;
+
+    @Column
+    private List<String> permissions;
+
+    @Column
+    private Map<String, String> settings;
+
+    public CollectionEntity() {
+    }
+
+    public CollectionEntity(int id, List<String> permissions, Map<String, String> settings) {
+        this.id = id;
+        this.permissions = permissions;
+        this.settings = settings;
+    }
+
+}
@@ -0,0 +1,28 @@
+package cz.foresttech.database.benchmark.entity;
+
+import cz.foresttech.database.annotation.Column;
+import cz.foresttech.database.annotation.DatabaseEntity;
+
+import java.sql.Timestamp;
+
+@DatabaseEntity
+public class InheritedEntity extends BaseEntity {
+
+    @Column
+    private String owner;
+
+    @Column
+    private int members;
+
+    public InheritedEntity() {
+    }
+
+    public InheritedEntity(long id, Timestamp createdAt, String owner, int members) {
+        this.id = id;
+        this.createdAt = createdAt;
+        this.updatedAt = createdAt;
+        this.owner = owner;
+        this.members = members;
+    }
+
+}
@@ -0,0 +1,37 @@
+package cz.foresttech.database.benchmark.entity;
+
+import cz.foresttech.database.annotation.Column;
+import cz.foresttech.database.annotation.DatabaseEntity;
+import cz.foresttech.database.annotation.PrimaryKey;
+
+@DatabaseEntity
+public class PrimitiveEntity {
+
+    @Column
+    @PrimaryKey
+    private long id;
+
+    @Column
+    private int level;
+
+    @Column
+    private double balance;
+
+    @Column
+    private boolean online;
+
+    @Column
+    private float ratio;
+
+    public PrimitiveEntity() {
+    }
+
+    public PrimitiveEntity(long id, int level, double balance, boolean online, float ratio) {
+        this.id = id;
+        this.level = level;
+        this.balance = balance;
+        this.online = online;
+        this.ratio = ratio;
+    }
+
+}
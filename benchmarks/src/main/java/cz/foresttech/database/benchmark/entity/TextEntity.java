@@ -0,0 +1,44 @@
+package cz.foresttech.database.benchmark.entity;
+
+import cz.foresttech.database.annotation.Column;
+import cz.foresttech.database.annotation.DatabaseEntity;
+import cz.foresttech.database.annotation.NullableColumn;
+import cz.foresttech.database.annotation.PrimaryKey;
+import cz.foresttech.database.annotation.Text;
+
+import java.util.UUID;
+
+@DatabaseEntity
+public class TextEntity {
+
+    public enum Rank {
+        MEMBER, VIP, ADMIN
+    }
+
+    @Column
+    @PrimaryKey
+    private UUID uuid;
+
+    @Column
+    @Text(customLength = 16)
+    private String name;
+
+    @Column
+    @NullableColumn
+    @Text
+    private String description;
+
+    @Column
+    private Rank rank;
+
+    public TextEntity() {
+    }
+
+    public TextEntity(UUID uuid, String name, String description, Rank rank) {
+        this.uuid = uuid;
+        this.name = name;
+        this.description = description;
+        this.rank = rank;
+    }
+
+}
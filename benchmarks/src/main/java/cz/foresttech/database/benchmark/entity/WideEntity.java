@@ -0,0 +1,115 @@
+package cz.foresttech.database.benchmark.entity;
+
+import cz.foresttech.database.annotation.Column;
+import cz.foresttech.database.annotation.DatabaseEntity;
+import cz.foresttech.database.annotation.PrimaryKey;
+
+/**
+ * Entity with many columns, alternating numbers and strings.
+ */
+@DatabaseEntity
+public class WideEntity {
+
+    public static final int COLUMNS = 32;
+
+    @Column
+    @PrimaryKey
+    private long id;
+
+    @Column
+    private long column1;
+
+    @Column
+    private String column2;
+
+    @Column
+    private long column3;
+
+    @Column
+    private String column4;
+
+    @Column
+    private long column5;
+
+    @Column
+    private String column6;
+
+    @Column
+    private long column7;
+
+    @Column
+    private String column8;
+
+    @Column
+    private long column9;
+
+    @Column
+    private String column10;
+
+    @Column
+    private long column11;
+
+    @Column
+    private String column12;
+
+    @Column
+    private long column13;
+
+    @Column
+    private String column14;
+
+    @Column
+    private long column15;
+
+    @Column
+    private String column16;
+
+    @Column
+    private long column17;
+
+    @Column
+    private String column18;
+
+    @Column
+    private long column19;
+
+    @Column
+    private String column20;
+
+    @Column
+    private long column21;
+
+    @Column
+    private String column22;
+
+    @Column
+    private long column23;
+
+    @Column
+    private String column24;
+
+    @Column
+    private long column25;
+
+    @Column
+    private String column26;
+
+    @Column
+    private long column27;
+
+    @Column
+    private String column28;
+
+    @Column
+    private long column29;
+
+    @Column
+    private String column30;
+
+    @Column
+    private long column31;
+
+    public WideEntity() {
+    }
+
+}
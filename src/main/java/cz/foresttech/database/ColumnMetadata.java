@@ -0,0 +1,141 @@
+package cz.foresttech.database;
+
+import cz.foresttech.database.processor.DatabaseValueProcessor;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Immutable description of a single entity column.
+ * Instances are created once per entity class by {@link EntityMetadata} and reused by every convertor call.
+ */
+public final class ColumnMetadata {
+
+    private static final Set<Class<?>> NATIVE_TYPES = Set.of(int.class, Integer.class, long.class, Long.class,
+            double.class, Double.class, float.class, Float.class, short.class, Short.class, boolean.class, Boolean.class,
+            BigDecimal.class, Timestamp.class, UUID.class);
+
+    private final Field field;
+    private final FieldAccessor accessor;
+    private final String name;
+    private final String sqlType;
+    private final String definition;
+    private final DatabaseValueProcessor processor;
+    private final ColumnReader reader;
+    private final boolean primaryKey;
+    private final boolean nullable;
+    private final boolean characterType;
+    private final String placeholder;
+
+    ColumnMetadata(Field field, FieldAccessor accessor, String name, String sqlType, String definition,
+                   DatabaseValueProcessor processor, boolean primaryKey, boolean nullable) {
+        this.field = field;
+        this.accessor = accessor;
+        this.name = name;
+        this.sqlType = sqlType;
+        this.definition = definition;
+        this.processor = processor;
+        this.reader = ColumnReader.of(field.getType(), processor);
+        this.primaryKey = primaryKey;
+        this.nullable = nullable;
+        this.characterType = isCharacterType(sqlType);
+        // Values bound as strings are cast explicitly, as the server does not convert strings to other types
+        boolean boundAsString = processor != null || !NATIVE_TYPES.contains(field.getType());
+        this.placeholder = boundAsString && !characterType ? "CAST(? AS " + EntityMetadata.getBaseType(sqlType) + ")" : "?";
+    }
+
+    /**
+     * @return the (accessible) field backing this column.
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return the accessor used to read and write the backing field.
+     */
+    public FieldAccessor getAccessor() {
+        return accessor;
+    }
+
+    /**
+     * @return the Java type of the backing field.
+     */
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    /**
+     * @return the database column name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the SQL type of the column, without constraints.
+     */
+    public String getSqlType() {
+        return sqlType;
+    }
+
+    /**
+     * @return the SQL column definition used in CREATE TABLE scripts (type and constraints).
+     */
+    public String getDefinition() {
+        return definition;
+    }
+
+    /**
+     * @return the value processor resolved for the field type, or null if none is registered.
+     */
+    public DatabaseValueProcessor getProcessor() {
+        return processor;
+    }
+
+    /**
+     * @return the reader converting row cells to the field type.
+     */
+    ColumnReader getReader() {
+        return reader;
+    }
+
+    /**
+     * @return true if the column is a part of the primary key.
+     */
+    public boolean isPrimaryKey() {
+        return primaryKey;
+    }
+
+    /**
+     * @return true if the column is annotated with {@link cz.foresttech.database.annotation.NullableColumn}.
+     */
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    /**
+     * @return true if the SQL type of the column is a character type, e.g. {@code VARCHAR} or {@code TEXT}.
+     */
+    public boolean isCharacterType() {
+        return characterType;
+    }
+
+    /**
+     * @return the placeholder binding a value of this column in scripts, cast to the column type
+     * if the value is bound as a string.
+     */
+    public String getPlaceholder() {
+        return placeholder;
+    }
+
+    private static boolean isCharacterType(String sqlType) {
+        String type = sqlType.trim().toUpperCase(Locale.ROOT);
+        return type.startsWith("VARCHAR") || type.startsWith("CHAR") || type.startsWith("TEXT") || type.startsWith("BPCHAR");
+    }
+
+}
@@ -0,0 +1,211 @@
+package cz.foresttech.database;
+
+import cz.foresttech.database.processor.DatabaseValueProcessor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.UUID;
+
+/**
+ * Converts a {@link DBRow} cell or a {@link ResultSet} column to the value of an entity field.
+ * A reader is chosen once per column from the field type, so rows are converted without inspecting the field again
+ * and only columns handled by a {@link DatabaseValueProcessor} are turned into strings.
+ */
+enum ColumnReader {
+
+    INT {
+        @Override
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            column.getAccessor().setInt(instance, row.getInt(index));
+        }
+
+        @Override
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            column.getAccessor().setInt(instance, result.getInt(index));
+        }
+    },
+    LONG {
+        @Override
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            column.getAccessor().setLong(instance, row.getLongPrimitive(index));
+        }
+
+        @Override
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            column.getAccessor().setLong(instance, result.getLong(index));
+        }
+    },
+    DOUBLE {
+        @Override
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            column.getAccessor().setDouble(instance, row.getDouble(index));
+        }
+
+        @Override
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            column.getAccessor().setDouble(instance, result.getDouble(index));
+        }
+    },
+    BOOLEAN {
+        @Override
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            column.getAccessor().setBoolean(instance, row.getBoolean(index));
+        }
+
+        @Override
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            column.getAccessor().setBoolean(instance, result.getBoolean(index));
+        }
+    },
+    FLOAT {
+        @Override
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            column.getAccessor().set(instance, (float) row.getDouble(index));
+        }
+
+        @Override
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            column.getAccessor().set(instance, result.getFloat(index));
+        }
+    },
+    CHAR {
+        @Override
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            String value = row.getString(index);
+            column.getAccessor().set(instance, value == null || value.isEmpty() ? 'x' : value.charAt(0));
+        }
+
+        @Override
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            String value = DBRow.toString(result.getObject(index));
+            column.getAccessor().set(instance, value == null || value.isEmpty() ? 'x' : value.charAt(0));
+        }
+    },
+    UUID {
+        @Override
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            column.getAccessor().set(instance, row.getUUID(index));
+        }
+
+        @Override
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            String value = DBRow.toString(result.getObject(index));
+            column.getAccessor().set(instance, value == null ? null : java.util.UUID.fromString(value));
+        }
+    },
+    ENUM {
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            String value = row.getString(index);
+            column.getAccessor().set(instance, value == null ? null : Enum.valueOf((Class<Enum>) column.getType(), value));
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            String value = DBRow.toString(result.getObject(index));
+            column.getAccessor().set(instance, value == null ? null : Enum.valueOf((Class<Enum>) column.getType(), value));
+        }
+    },
+    TIMESTAMP {
+        @Override
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            column.getAccessor().set(instance, row.getTimestamp(index));
+        }
+
+        @Override
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            column.getAccessor().set(instance, result.getTimestamp(index));
+        }
+    },
+    PROCESSOR {
+        @Override
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            String value = row.getString(index);
+            column.getAccessor().set(instance, value == null ? null
+                    : column.getProcessor().getFromString(column.getField().getGenericType(), value));
+        }
+
+        @Override
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            String value = DBRow.toString(result.getObject(index));
+            column.getAccessor().set(instance, value == null ? null
+                    : column.getProcessor().getFromString(column.getField().getGenericType(), value));
+        }
+    },
+    OBJECT {
+        @Override
+        void read(ColumnMetadata column, DBRow row, int index, Object instance) {
+            column.getAccessor().set(instance, row.getObject(index));
+        }
+
+        @Override
+        void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException {
+            column.getAccessor().set(instance, result.getObject(index));
+        }
+    };
+
+    /**
+     * Reads a cell and writes it to the field of the column.
+     *
+     * @param column   the column being read.
+     * @param row      the row containing the cell.
+     * @param index    the index of the cell in the row.
+     * @param instance the entity instance to be populated.
+     */
+    abstract void read(ColumnMetadata column, DBRow row, int index, Object instance);
+
+    /**
+     * Reads a column of the current result set row and writes it to the field of the column.
+     *
+     * @param column   the column being read.
+     * @param result   the result set positioned on a row.
+     * @param index    the JDBC index of the column in the result set.
+     * @param instance the entity instance to be populated.
+     */
+    abstract void read(ColumnMetadata column, ResultSet result, int index, Object instance) throws SQLException;
+
+    /**
+     * Chooses the reader of a field.
+     *
+     * @param type      the field type.
+     * @param processor the value processor registered for the field type, may be null.
+     * @return the reader converting cells to the field type.
+     */
+    static ColumnReader of(Class<?> type, DatabaseValueProcessor processor) {
+        if (type == java.util.UUID.class) {
+            return UUID;
+        }
+        if (type.isEnum()) {
+            return ENUM;
+        }
+        if (processor != null) {
+            return PROCESSOR;
+        }
+        if (type == int.class) {
+            return INT;
+        }
+        if (type == long.class) {
+            return LONG;
+        }
+        if (type == double.class) {
+            return DOUBLE;
+        }
+        if (type == boolean.class) {
+            return BOOLEAN;
+        }
+        if (type == float.class) {
+            return FLOAT;
+        }
+        if (type == char.class) {
+            return CHAR;
+        }
+        if (type == Timestamp.class) {
+            return TIMESTAMP;
+        }
+        return OBJECT;
+    }
+
+}
@@ -0,0 +1,21 @@
+package cz.foresttech.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of waiting for a pooled connection.
+ */
+@Name("cz.foresttech.database.ConnectionAcquire")
+@Label("Connection Acquire")
+@Category("ForestDatabase")
+@Description("Waiting for a connection from the pool")
+final class ConnectionAcquireEvent extends Event {
+
+    @Label("Database")
+    String database;
+
+}
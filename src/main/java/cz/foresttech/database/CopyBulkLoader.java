@@ -0,0 +1,140 @@
+package cz.foresttech.database;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Streams entities into PostgreSQL using the COPY protocol.
+ * Rows are encoded as CSV from the same parameters used by the upsert script, so value processors apply unchanged.
+ */
+class CopyBulkLoader {
+
+    private static final String STAGING_TABLE = "forest_bulk_staging";
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+    private final DatabaseEntityConvertor databaseEntityConvertor;
+
+    CopyBulkLoader(DatabaseEntityConvertor databaseEntityConvertor) {
+        this.databaseEntityConvertor = databaseEntityConvertor;
+    }
+
+    /**
+     * Copies all objects into the table of the class in a single transaction.
+     *
+     * @param database the database to load the objects into.
+     * @param clazz    the class of the objects.
+     * @param objects  the objects to be loaded.
+     * @param upsert   if true, rows are copied into a temporary staging table and merged using the upsert clause,
+     *                 otherwise they are copied directly and existing primary keys make the load fail.
+     * @return the number of copied rows, or -1 if the load failed and was rolled back.
+     */
+    <T> long load(ForestDatabase database, Class<T> clazz, Iterable<? extends T> objects, boolean upsert) {
+        EntityMetadata metadata = databaseEntityConvertor.getMetadata(clazz);
+        String columns = metadata.getColumnList();
+        String target = upsert ? STAGING_TABLE : metadata.getTableName();
+
+        Connection connection = null;
+        CopyIn copyIn = null;
+        try {
+            connection = database.getConnection();
+            connection.setAutoCommit(false);
+
+            if (upsert) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TEMP TABLE " + STAGING_TABLE + " (LIKE " + metadata.getTableName()
+                            + " INCLUDING DEFAULTS) ON COMMIT DROP;");
+                }
+            }
+
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            copyIn = copyManager.copyIn("COPY " + target + " (" + columns + ") FROM STDIN WITH (FORMAT csv)");
+
+            StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 1024);
+            for (T object : objects) {
+                appendRow(buffer, databaseEntityConvertor.insertOrUpdateParameters(clazz, object));
+                if (buffer.length() >= FLUSH_THRESHOLD) {
+                    flush(copyIn, buffer);
+                }
+            }
+            flush(copyIn, buffer);
+            long rows = copyIn.endCopy();
+
+            if (upsert) {
+                String conflictTarget = metadata.getConflictTarget();
+                // Latest copied row wins when the same key is present multiple times
+                String select = conflictTarget.isEmpty()
+                        ? "SELECT " + columns + " FROM " + STAGING_TABLE
+                        : "SELECT DISTINCT ON (" + conflictTarget + ") " + columns + " FROM " + STAGING_TABLE
+                        + " ORDER BY " + conflictTarget + ", ctid DESC";
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("INSERT INTO " + metadata.getTableName() + " (" + columns + ") "
+                            + select + metadata.getUpsertClause() + ";");
+                }
+            }
+
+            connection.commit();
+            return rows;
+        } catch (Exception exception) {
+            exception.printStackTrace();
+            try {
+                if (copyIn != null && copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+                if (connection != null) {
+                    connection.rollback();
+                }
+            } catch (Exception ignored) {
+            }
+            return -1;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connection.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private static void flush(CopyIn copyIn, StringBuilder buffer) throws Exception {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    /**
+     * Appends one CSV row. Unquoted empty values are read as NULL, all other values are quoted.
+     */
+    private static void appendRow(StringBuilder buffer, Object[] parameters) {
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                buffer.append(',');
+            }
+
+            Object value = parameters[i];
+            if (value == null) {
+                continue;
+            }
+
+            String text = value.toString();
+            buffer.append('"');
+            for (int c = 0; c < text.length(); c++) {
+                char character = text.charAt(c);
+                if (character == '"') {
+                    buffer.append('"');
+                }
+                buffer.append(character);
+            }
+            buffer.append('"');
+        }
+        buffer.append('\n');
+    }
+
+}
@@ -1,28 +1,69 @@
 package cz.foresttech.database;
 
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.*;
 
 public class DBRow {
-    private final HashMap<String, Object> cells;
+    private DBRowSchema schema;
+    private Object[] cells;
 
     public DBRow() {
-        this.cells = new HashMap<>();
+        this.schema = DBRowSchema.empty();
+        this.cells = new Object[0];
+    }
+
+    /**
+     * Creates a row backed by the given values. The array is not copied.
+     *
+     * @param schema the column names, usually shared by all rows of a result set.
+     * @param cells  the values, in the order of the schema columns.
+     */
+    public DBRow(final DBRowSchema schema, final Object[] cells) {
+        this.schema = schema;
+        this.cells = cells;
     }
 
     public void addCell(final String key, final Object value) {
-        this.cells.put(key, value);
+        int index = this.schema.indexOf(key);
+        if (index < 0) {
+            this.schema = this.schema.with(key);
+            this.cells = Arrays.copyOf(this.cells, this.cells.length + 1);
+            index = this.cells.length - 1;
+        }
+        this.cells[index] = value;
+    }
+
+    public DBRowSchema getSchema() {
+        return this.schema;
     }
 
     public Object getObject(final String key) {
-        return this.cells.get(key);
+        final int index = this.schema.indexOf(key);
+        return index < 0 ? null : this.cells[index];
+    }
+
+    public Object getObject(final int index) {
+        return this.cells[index];
     }
 
     public boolean hasColumn(final String key) {
-        return this.cells.containsKey(key);
+        return this.schema.indexOf(key) >= 0;
     }
 
     public String getString(final String key) {
-        final Object obj = this.cells.get(key);
+        final int index = this.schema.indexOf(key);
+        return index < 0 ? null : getString(index);
+    }
+
+    public String getString(final int index) {
+        return toString(this.cells[index]);
+    }
+
+    /**
+     * Converts a cell value to the string representation used by {@link #getString(String)}.
+     */
+    static String toString(final Object obj) {
         if (obj == null) {
             return null;
         }
@@ -33,10 +74,114 @@ public class DBRow {
     }
 
     public Long getLong(final String key) {
-        final Object obj = this.cells.get(key);
-        return (obj == null) ? 0 : ((Long) this.cells.get(key));
+        final Object obj = getObject(key);
+        return (obj == null) ? 0 : ((Long) obj);
     }
 
-}
+    public int getInt(final String key) {
+        final int index = this.schema.indexOf(key);
+        return index < 0 ? 0 : getInt(index);
+    }
+
+    public int getInt(final int index) {
+        final Object obj = this.cells[index];
+        if (obj == null) {
+            return 0;
+        }
+        if (obj instanceof Number) {
+            return ((Number) obj).intValue();
+        }
+        return Integer.parseInt(obj.toString());
+    }
 
+    public long getLongPrimitive(final String key) {
+        final int index = this.schema.indexOf(key);
+        return index < 0 ? 0L : getLongPrimitive(index);
+    }
 
+    public long getLongPrimitive(final int index) {
+        final Object obj = this.cells[index];
+        if (obj == null) {
+            return 0L;
+        }
+        if (obj instanceof Number) {
+            return ((Number) obj).longValue();
+        }
+        return Long.parseLong(obj.toString());
+    }
+
+    public double getDouble(final String key) {
+        final int index = this.schema.indexOf(key);
+        return index < 0 ? 0.0 : getDouble(index);
+    }
+
+    public double getDouble(final int index) {
+        final Object obj = this.cells[index];
+        if (obj == null) {
+            return 0.0;
+        }
+        if (obj instanceof Number) {
+            return ((Number) obj).doubleValue();
+        }
+        return Double.parseDouble(obj.toString());
+    }
+
+    public boolean getBoolean(final String key) {
+        final int index = this.schema.indexOf(key);
+        return index >= 0 && getBoolean(index);
+    }
+
+    public boolean getBoolean(final int index) {
+        final Object obj = this.cells[index];
+        if (obj == null) {
+            return false;
+        }
+        if (obj instanceof Boolean) {
+            return (Boolean) obj;
+        }
+        if (obj instanceof Number) {
+            return ((Number) obj).intValue() != 0;
+        }
+        final String value = obj.toString();
+        return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("t") || value.equals("1");
+    }
+
+    public UUID getUUID(final String key) {
+        final int index = this.schema.indexOf(key);
+        return index < 0 ? null : getUUID(index);
+    }
+
+    public UUID getUUID(final int index) {
+        final Object obj = this.cells[index];
+        if (obj == null) {
+            return null;
+        }
+        if (obj instanceof UUID) {
+            return (UUID) obj;
+        }
+        return UUID.fromString(obj.toString());
+    }
+
+    public Timestamp getTimestamp(final String key) {
+        final int index = this.schema.indexOf(key);
+        return index < 0 ? null : getTimestamp(index);
+    }
+
+    public Timestamp getTimestamp(final int index) {
+        final Object obj = this.cells[index];
+        if (obj == null) {
+            return null;
+        }
+        if (obj instanceof Timestamp) {
+            return (Timestamp) obj;
+        }
+        if (obj instanceof Date) {
+            return new Timestamp(((Date) obj).getTime());
+        }
+        if (obj instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) obj);
+        }
+        return Timestamp.valueOf(obj.toString());
+    }
+
+}
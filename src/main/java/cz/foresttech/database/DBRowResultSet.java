@@ -0,0 +1,136 @@
+package cz.foresttech.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+
+/**
+ * Presents already loaded {@link DBRow}s as a forward-only {@link ResultSet}, so a {@link ResultSetMapper}
+ * can map rows of databases which implement only {@link ForestDatabase#query(String, Object...)}.
+ * Only the getters used by mappers are supported, all other methods throw {@link SQLFeatureNotSupportedException}.
+ */
+final class DBRowResultSet implements InvocationHandler {
+
+    private final List<DBRow> rows;
+    private final DBRowSchema schema;
+    private int position = -1;
+    private boolean wasNull;
+    private boolean closed;
+
+    private DBRowResultSet(List<DBRow> rows) {
+        this.rows = rows;
+        this.schema = rows.isEmpty() ? DBRowSchema.empty() : rows.get(0).getSchema();
+    }
+
+    /**
+     * @param rows the rows to be presented, the schema of the first row describes all of them.
+     * @return the result set positioned before the first row.
+     */
+    static ResultSet of(List<DBRow> rows) {
+        return (ResultSet) Proxy.newProxyInstance(DBRowResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new DBRowResultSet(rows));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "next":
+                return ++position < rows.size();
+            case "close":
+                closed = true;
+                return null;
+            case "isClosed":
+                return closed;
+            case "wasNull":
+                return wasNull;
+            case "findColumn":
+                return findColumn((String) args[0]);
+            case "getMetaData":
+                return Proxy.newProxyInstance(DBRowResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSetMetaData.class}, this::invokeMetaData);
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "DBRowResultSet[" + rows.size() + " rows]";
+            default:
+                break;
+        }
+
+        if (!method.getName().startsWith("get") || args == null || args.length != 1) {
+            throw new SQLFeatureNotSupportedException(method.getName());
+        }
+        int index = args[0] instanceof String ? findColumn((String) args[0]) : (Integer) args[0];
+        DBRow row = currentRow();
+        Object value = row.getObject(index - 1);
+        wasNull = value == null;
+
+        switch (method.getName()) {
+            case "getObject":
+                return value;
+            case "getString":
+                return value == null ? null : value.toString();
+            case "getInt":
+                return row.getInt(index - 1);
+            case "getLong":
+                return row.getLongPrimitive(index - 1);
+            case "getShort":
+                return (short) row.getInt(index - 1);
+            case "getDouble":
+                return row.getDouble(index - 1);
+            case "getFloat":
+                return (float) row.getDouble(index - 1);
+            case "getBoolean":
+                return row.getBoolean(index - 1);
+            case "getTimestamp":
+                return row.getTimestamp(index - 1);
+            case "getBytes":
+                return (byte[]) value;
+            default:
+                throw new SQLFeatureNotSupportedException(method.getName());
+        }
+    }
+
+    private Object invokeMetaData(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "getColumnCount":
+                return schema.size();
+            case "getColumnName":
+            case "getColumnLabel":
+                return schema.getName((Integer) args[0] - 1);
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "DBRowResultSetMetaData[" + schema.size() + " columns]";
+            default:
+                throw new SQLFeatureNotSupportedException(method.getName());
+        }
+    }
+
+    private DBRow currentRow() throws SQLException {
+        if (closed) {
+            throw new SQLException("The result set is closed");
+        }
+        if (position < 0 || position >= rows.size()) {
+            throw new SQLException("The result set is not positioned on a row");
+        }
+        return rows.get(position);
+    }
+
+    private int findColumn(String name) throws SQLException {
+        int index = schema.indexOf(name);
+        if (index < 0) {
+            throw new SQLException("Unknown column " + name);
+        }
+        return index + 1;
+    }
+
+}
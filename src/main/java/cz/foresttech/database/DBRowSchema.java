@@ -0,0 +1,86 @@
+package cz.foresttech.database;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Column names of a result set, shared by all {@link DBRow}s read from it.
+ */
+public final class DBRowSchema {
+
+    private static final DBRowSchema EMPTY = new DBRowSchema(new String[0]);
+
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+
+    private DBRowSchema(String[] names) {
+        this.names = names;
+        this.indexes = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            indexes.put(names[i], i);
+        }
+    }
+
+    /**
+     * @return a schema without any columns.
+     */
+    public static DBRowSchema empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates the schema of a result set.
+     *
+     * @param mtd the metadata of the result set.
+     * @return the schema with the result set columns in order.
+     */
+    public static DBRowSchema of(ResultSetMetaData mtd) throws SQLException {
+        String[] names = new String[mtd.getColumnCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = mtd.getColumnName(i + 1);
+        }
+        return new DBRowSchema(names);
+    }
+
+    /**
+     * Creates a new schema with an additional column. This schema is not modified.
+     *
+     * @param name the name of the added column.
+     * @return the extended schema.
+     */
+    public DBRowSchema with(String name) {
+        String[] extended = Arrays.copyOf(names, names.length + 1);
+        extended[names.length] = name;
+        return new DBRowSchema(extended);
+    }
+
+    /**
+     * Looks up the index of a column. If the name is present multiple times, the last column wins.
+     *
+     * @param name the column name.
+     * @return the index of the column, or -1 if there is no such column.
+     */
+    public int indexOf(String name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param index the column index.
+     * @return the name of the column.
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @return the number of columns.
+     */
+    public int size() {
+        return names.length;
+    }
+
+}
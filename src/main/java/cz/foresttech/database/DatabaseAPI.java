@@ -1,16 +1,43 @@
 package cz.foresttech.database;
 
+import cz.foresttech.database.metrics.MetricKey;
+import cz.foresttech.database.metrics.MetricsRegistry;
+import cz.foresttech.database.metrics.Operation;
+import cz.foresttech.database.metrics.PoolStatsSnapshot;
 import cz.foresttech.database.processor.DatabaseValueProcessor;
 import cz.foresttech.database.processor.ListProcessor;
 import cz.foresttech.database.processor.MapProcessor;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
 
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Provides an API to interact with databases.
@@ -21,12 +48,42 @@ public class DatabaseAPI {
 
     private final JavaPlugin javaPlugin;
     private final DatabaseEntityConvertor databaseEntityConvertor;
+    private final CopyBulkLoader copyBulkLoader;
     private Map<Class, DatabaseValueProcessor> processorMap;
     private Map<String, ForestDatabase> databaseMap;
+    private int batchSize = 500;
+    private int fetchSize = 1000;
+    private volatile WriteBehindQueue writeBehindQueue;
+    private final Map<Class<?>, EntityCache> cacheMap;
+    private volatile DirtyTracker dirtyTracker;
+    private final Executor configuredExecutor;
+    private Executor executor;
+    private ExecutorService ownedExecutor;
+    private MainThreadWatchdog mainThreadWatchdog;
+    private BukkitTask watchdogTickTask;
+    private final MetricsRegistry metricsRegistry;
+    private final ThreadLocal<Transaction> transactions;
 
     public DatabaseAPI(JavaPlugin javaPlugin) {
+        this(javaPlugin, null);
+    }
+
+    /**
+     * Creates the API running asynchronous operations on the given executor.
+     * The executor is not shut down by {@link #closeAll()}.
+     *
+     * @param javaPlugin the plugin owning the API.
+     * @param executor   the executor of asynchronous operations, or null to use the default executor.
+     * @see #getExecutor()
+     */
+    public DatabaseAPI(JavaPlugin javaPlugin, Executor executor) {
         this.javaPlugin = javaPlugin;
+        this.configuredExecutor = executor;
+        this.cacheMap = new ConcurrentHashMap<>();
+        this.metricsRegistry = new MetricsRegistry();
+        this.transactions = new ThreadLocal<>();
         this.databaseEntityConvertor = new DatabaseEntityConvertor(this);
+        this.copyBulkLoader = new CopyBulkLoader(databaseEntityConvertor);
     }
 
     /**
@@ -43,19 +100,167 @@ public class DatabaseAPI {
 
     /**
      * Closes all database connections that have been opened.
+     * Writes still pending in the write-behind queue are flushed first.
      */
     public void closeAll() {
+        setMainThreadWatchdog(MainThreadWatchdog.Mode.OFF, null);
+        disableWriteBehind();
+        shutdownExecutor();
         databaseMap.values().forEach(ForestDatabase::close);
     }
 
+    /**
+     * Watches synchronous database calls made on the server thread in all registered databases.
+     * The time such calls block the server thread is accounted per tick and reported according to the mode.
+     *
+     * @param mode   Reaction to calls made on the server thread, {@link MainThreadWatchdog.Mode#OFF} to stop watching
+     * @param budget Time the server thread may spend in the database per tick, used by {@link MainThreadWatchdog.Mode#WARN}
+     * @return The watchdog providing the accounted times, or null if watching is turned off
+     */
+    public synchronized MainThreadWatchdog setMainThreadWatchdog(MainThreadWatchdog.Mode mode, Duration budget) {
+        if (watchdogTickTask != null) {
+            watchdogTickTask.cancel();
+            watchdogTickTask = null;
+        }
+
+        mainThreadWatchdog = mode == MainThreadWatchdog.Mode.OFF ? null
+                : new MainThreadWatchdog(mode, budget, javaPlugin.getLogger());
+        if (mainThreadWatchdog != null) {
+            watchdogTickTask = Bukkit.getScheduler().runTaskTimer(javaPlugin, mainThreadWatchdog::tick, 1, 1);
+        }
+
+        if (databaseMap != null) {
+            databaseMap.values().forEach(database -> database.setMainThreadWatchdog(mainThreadWatchdog));
+        }
+        return mainThreadWatchdog;
+    }
+
+    /**
+     * Retrieves the watchdog of database calls made on the server thread.
+     *
+     * @return The watchdog, or null if watching is turned off
+     */
+    public synchronized MainThreadWatchdog getMainThreadWatchdog() {
+        return mainThreadWatchdog;
+    }
+
+    /**
+     * Retrieves the executor running asynchronous operations.
+     * Unless an executor has been passed to the constructor, a virtual thread per task executor is used on Java 21
+     * and newer, so blocking database calls do not occupy platform threads. On older versions a bounded pool of
+     * platform threads is used instead. The default executor is created on first use.
+     *
+     * @return The executor of asynchronous operations.
+     */
+    public synchronized Executor getExecutor() {
+        if (executor == null) {
+            if (configuredExecutor != null) {
+                executor = configuredExecutor;
+            } else {
+                ownedExecutor = createDefaultExecutor();
+                executor = ownedExecutor;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Creates the virtual thread per task executor if the runtime supports virtual threads,
+     * otherwise a fixed-size pool of daemon threads.
+     */
+    private static ExecutorService createDefaultExecutor() {
+        try {
+            // Looked up reflectively, the library is compiled for Java 17
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ignored) {
+        }
+
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "ForestDatabase-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Shuts down the default executor, waiting for running operations to finish.
+     * A default executor is created again if an asynchronous operation is requested later.
+     */
+    private void shutdownExecutor() {
+        ExecutorService service;
+        synchronized (this) {
+            service = ownedExecutor;
+            ownedExecutor = null;
+            executor = null;
+        }
+        if (service == null) {
+            return;
+        }
+
+        service.shutdown();
+        try {
+            if (!service.awaitTermination(10, TimeUnit.SECONDS)) {
+                service.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            service.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Enables write-behind mode for asynchronous inserts and updates.
+     * Objects passed to {@link #insertOrUpdateAsync(String, Object)} are queued instead of being written
+     * immediately. Only the latest state of each row is kept and the queue is written in batches, either
+     * periodically or once it reaches the given size. Objects without a primary key are written immediately.
+     *
+     * @param flushIntervalTicks Number of ticks between periodic flushes
+     * @param maxQueueSize       Number of pending rows which triggers an immediate flush
+     */
+    public synchronized void enableWriteBehind(long flushIntervalTicks, int maxQueueSize) {
+        disableWriteBehind();
+        writeBehindQueue = new WriteBehindQueue(this, javaPlugin, Math.max(1, flushIntervalTicks), Math.max(1, maxQueueSize));
+    }
+
+    /**
+     * Disables write-behind mode and synchronously writes all pending objects.
+     */
+    public synchronized void disableWriteBehind() {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue == null) {
+            return;
+        }
+        writeBehindQueue = null;
+        queue.close();
+    }
+
+    /**
+     * Synchronously writes all objects pending in the write-behind queue, if enabled.
+     */
+    public void flushWriteBehind() {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.flush();
+        }
+    }
+
     /**
      * Registers a new processor for a specific class type.
+     * Cached entity metadata is dropped, so the processor is picked up by already known entities.
      *
      * @param clazz                    The class for which the processor is to be registered.
      * @param databaseValueProcessor   The processor that will handle the specific class type.
      */
     public void registerNewProcessor(Class clazz, DatabaseValueProcessor databaseValueProcessor) {
         processorMap.put(clazz, databaseValueProcessor);
+        databaseEntityConvertor.invalidateMetadata();
     }
 
     /**
@@ -68,6 +273,92 @@ public class DatabaseAPI {
         return processorMap.get(clazz);
     }
 
+    /**
+     * Sets the maximum number of rows sent to the database in one JDBC batch by {@link #insertOrUpdateAll(String, Collection)}.
+     *
+     * @param batchSize Maximum number of rows per batch (at least 1)
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Sets the number of rows fetched from the server at once by {@link #stream(String, Class)}.
+     *
+     * @param fetchSize Number of rows per fetch (at least 1)
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    /**
+     * Enables or disables dirty tracking of entities with a primary key.
+     * When enabled, the column values of entities loaded or saved through this API are remembered
+     * (without keeping the entities in memory). Saving such an entity again writes only the changed columns
+     * using an UPDATE statement and skips the database entirely if nothing has changed. Entities which
+     * were not loaded, were changed in their primary key or whose row no longer exists are saved using
+     * the full insert or update statement.
+     *
+     * @param enabled true to enable dirty tracking
+     */
+    public void setDirtyTracking(boolean enabled) {
+        if (enabled == (dirtyTracker != null)) {
+            return;
+        }
+        dirtyTracker = enabled ? new DirtyTracker() : null;
+    }
+
+    /**
+     * Enables a read cache of entities of the given class, keyed by primary key.
+     * The cache serves {@link #findById(String, Class, Object...)} and {@link #findAllByIds(String, Class, Collection)}
+     * and is kept up to date by inserts, updates and deletes performed through this API.
+     * Changes made to the table by other means are not visible until the cached entries expire.
+     * <p>
+     * <b>Cached entities are not copied.</b> Every caller of {@code findById} gets the same instance, including
+     * the instance passed to the last insert or update, so a change made to it is immediately visible to other
+     * callers, even if it is never saved. Treat cached entities as read-only and save every change right away.
+     *
+     * @param clazz             The entity class, which must have a primary key
+     * @param maximumSize       Maximum number of cached keys, least recently used keys are evicted first
+     * @param expireAfterAccess Time after the last read or write an entry expires, null to disable
+     * @param expireAfterWrite  Time after the last write an entry expires, null to disable
+     * @param cacheMissing      If true, keys without a record are cached as well
+     * @return The created cache, which provides hit and miss statistics
+     * @throws IllegalArgumentException if the class has no primary key
+     */
+    public <T> EntityCache enableCache(Class<T> clazz, int maximumSize, Duration expireAfterAccess,
+                                       Duration expireAfterWrite, boolean cacheMissing) {
+        if (databaseEntityConvertor.getMetadata(clazz).getPrimaryKeys().isEmpty()) {
+            throw new IllegalArgumentException("Entity " + clazz.getName() + " has no primary key");
+        }
+
+        EntityCache cache = new EntityCache(Math.max(1, maximumSize), expireAfterAccess, expireAfterWrite, cacheMissing);
+        cacheMap.put(clazz, cache);
+        return cache;
+    }
+
+    /**
+     * Disables the read cache of entities of the given class and drops its entries.
+     *
+     * @param clazz The entity class
+     */
+    public void disableCache(Class<?> clazz) {
+        EntityCache cache = cacheMap.remove(clazz);
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Retrieves the read cache of entities of the given class.
+     *
+     * @param clazz The entity class
+     * @return The cache, or null if caching is not enabled for the class
+     */
+    public EntityCache getCache(Class<?> clazz) {
+        return cacheMap.get(clazz);
+    }
+
     /**
      * Adds a new {@link ForestDatabase} object to the local map.
      *
@@ -79,18 +370,109 @@ public class DatabaseAPI {
             return;
         }
         databaseMap.put(name.toUpperCase(), hikariDatabase);
+        hikariDatabase.setDatabaseMetrics(metricsRegistry.forDatabase(name));
+        synchronized (this) {
+            if (mainThreadWatchdog != null) {
+                hikariDatabase.setMainThreadWatchdog(mainThreadWatchdog);
+            }
+        }
     }
 
     /**
      * Retrieves the {@link ForestDatabase} object by its name.
+     * Inside a transaction of the database, the database executing the transaction is returned instead.
      *
      * @param name Name of the database to retrieve
      * @return {@link ForestDatabase} stored by provided name. Returns null if no database by the name is present.
      */
     public ForestDatabase getDatabase(String name) {
+        Transaction transaction = currentTransaction(name);
+        if (transaction != null) {
+            return transaction.getTarget();
+        }
         return databaseMap.get(name.toUpperCase());
     }
 
+    /**
+     * Retrieves the database holding the record with the given primary key, i.e. its shard for a sharded database.
+     */
+    private ForestDatabase getDatabase(String name, Object[] keyParameters) {
+        ForestDatabase forestDatabase = getDatabase(name);
+        if (forestDatabase instanceof ShardedDatabase shardedDatabase) {
+            return shardedDatabase.getShard(keyParameters);
+        }
+        return forestDatabase;
+    }
+
+    /**
+     * Retrieves the database holding the record of the object, i.e. its shard for a sharded database.
+     */
+    private <T> ForestDatabase getDatabase(String name, Class<T> clazz, T object) {
+        ForestDatabase forestDatabase = getDatabase(name);
+        if (forestDatabase instanceof ShardedDatabase shardedDatabase) {
+            return shardedDatabase.getShard(databaseEntityConvertor.deleteParameters(clazz, object));
+        }
+        return forestDatabase;
+    }
+
+    /**
+     * Runs a query on the database, or on all shards in parallel for a sharded database.
+     */
+    private <R> List<R> queryAll(String name, Class<?> clazz, Operation operation, Function<ForestDatabase, List<R>> query) {
+        ForestDatabase forestDatabase = getDatabase(name);
+        if (!(forestDatabase instanceof ShardedDatabase shardedDatabase)) {
+            return query.apply(forestDatabase);
+        }
+
+        // Shards may be queried by executor threads, which have to be marked for the metrics registry as well
+        return shardedDatabase.queryAll(shardedDatabase.getShards().values(), getExecutor(), shard -> {
+            try (MetricsRegistry.Scope scope = metricsRegistry.enter(clazz, operation)) {
+                return query.apply(shard);
+            }
+        });
+    }
+
+    /**
+     * Splits objects of a single class by the shard holding their records.
+     */
+    private <T> Map<ForestDatabase, List<T>> groupByShard(ShardedDatabase shardedDatabase, Class<T> clazz, List<T> objects) {
+        Map<ForestDatabase, List<T>> objectsByShard = new LinkedHashMap<>();
+        for (T object : objects) {
+            ForestDatabase shard = shardedDatabase.getShard(databaseEntityConvertor.deleteParameters(clazz, object));
+            objectsByShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(object);
+        }
+        return objectsByShard;
+    }
+
+    /**
+     * Retrieves the registry of statement and connection pool metrics of all registered databases.
+     * Statements are broken down by database, entity class and operation. Statements executed directly
+     * on a database are recorded as {@link Operation#CUSTOM} without an entity.
+     *
+     * @return The metrics registry.
+     */
+    public MetricsRegistry getMetrics() {
+        return metricsRegistry;
+    }
+
+    /**
+     * Retrieves the current state of the connection pool of a database.
+     *
+     * @param database The name of the database
+     * @return The pool state, of the primary for a {@link ReplicaRoutingDatabase}, or null if the database does not use
+     * a connection pool or it has not been started yet
+     */
+    public PoolStatsSnapshot getPoolStats(String database) {
+        ForestDatabase forestDatabase = getDatabase(database);
+        if (forestDatabase instanceof ReplicaRoutingDatabase routingDatabase) {
+            forestDatabase = routingDatabase.getPrimary();
+        }
+        if (forestDatabase instanceof HikariDatabase hikariDatabase) {
+            return hikariDatabase.getPoolStats();
+        }
+        return null;
+    }
+
     /**
      * Retrieves the database entity converter.
      *
@@ -108,7 +490,9 @@ public class DatabaseAPI {
      * @param <T>      The type parameter of the class.
      */
     public <T> void createTable(String database, Class<T> clazz) {
-        getDatabase(database).query(databaseEntityConvertor.generateCreateScript(clazz));
+        try (MetricsRegistry.Scope scope = enter(database, clazz, Operation.DDL)) {
+            getDatabase(database).query(databaseEntityConvertor.generateCreateScript(clazz));
+        }
     }
 
     /**
@@ -122,7 +506,7 @@ public class DatabaseAPI {
      */
     public <T> void insertOrUpdate(String database, T object, boolean async) {
         if (async) {
-            Bukkit.getScheduler().runTaskAsynchronously(javaPlugin, ()-> insertOrUpdate(database, object));
+            insertOrUpdateAsync(database, object);
             return;
         }
         insertOrUpdate(database, object);
@@ -130,13 +514,20 @@ public class DatabaseAPI {
 
     /**
      * Asynchronously performs an insert or update operation on the specified database.
+     * When write-behind mode is enabled, the object is queued and written with the next flush.
      *
      * @param database The name of the database where the operation will be performed.
      * @param object   The object to be inserted or updated.
      * @param <T>      The type of the object being operated on.
+     * @see #enableWriteBehind(long, int)
      */
     public <T> void insertOrUpdateAsync(String database, T object) {
-        Bukkit.getScheduler().runTaskAsynchronously(javaPlugin, ()-> insertOrUpdate(database, object));
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null && queue.enqueue(database, object)) {
+            cacheWrite(database, object);
+            return;
+        }
+        getExecutor().execute(()-> insertOrUpdate(database, object));
     }
 
     /**
@@ -148,15 +539,260 @@ public class DatabaseAPI {
      * @param <T>      The type of the object being operated on.
      */
     public <T> void insertOrUpdate(String database, T object) {
-        Class<T> clazz = (Class<T>) object.getClass();
+        try (MetricsRegistry.Scope scope = enter(database, object.getClass(), Operation.UPSERT)) {
+            // A queued older state must not overwrite this write when the queue is flushed
+            discardPendingWrite(database, object);
+            Class<T> clazz = (Class<T>) object.getClass();
+            DirtyTracker tracker = dirtyTracker;
+            boolean written;
+            if (tracker != null && !databaseEntityConvertor.getMetadata(clazz).getPrimaryKeys().isEmpty()) {
+                written = insertOrUpdateTracked(database, clazz, object, tracker);
+            } else {
+                written = write(getDatabase(database, clazz, object), databaseEntityConvertor.insertOrUpdateScript(clazz),
+                        databaseEntityConvertor.insertOrUpdateParameters(clazz, object)) >= 0;
+            }
+
+            if (written) {
+                cacheWrite(database, object);
+            } else {
+                // The cached instance may hold changes which were not written
+                cacheInvalidate(database, object);
+            }
+        }
+    }
+
+    /**
+     * Executes a write statement, reporting its failure.
+     *
+     * @return the number of returned rows, or -1 if the statement failed.
+     */
+    private int write(ForestDatabase forestDatabase, String script, Object[] parameters) {
         try {
-            List<DBRow> row = getDatabase(database).query(databaseEntityConvertor.insertOrUpdateScript(clazz, object));
-            try {
-                clazz.getField("id").set(object, row.get(0).getLong("id"));
-            } catch (Exception ignored) {}
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
+            return forestDatabase.queryChecked(script, result -> Boolean.TRUE, parameters).size();
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Saves an entity with a primary key, writing only the columns changed since it was last loaded or saved.
+     *
+     * @return true if the entity was saved.
+     */
+    private <T> boolean insertOrUpdateTracked(String database, Class<T> clazz, T object, DirtyTracker tracker) {
+        EntityMetadata metadata = databaseEntityConvertor.getMetadata(clazz);
+        Object[] parameters = databaseEntityConvertor.insertOrUpdateParameters(clazz, object);
+        int[] keyIndexes = metadata.getPrimaryKeyIndexes();
+
+        Object[] snapshot = tracker.getSnapshot(database, object);
+        ForestDatabase forestDatabase = getDatabase(database, clazz, object);
+        BitSet changedColumns = snapshot == null ? null : getChangedColumns(parameters, snapshot);
+        if (changedColumns != null && changedColumns.isEmpty()) {
+            return true;
+        }
+
+        boolean keyChanged = changedColumns == null
+                || Arrays.stream(keyIndexes).anyMatch(changedColumns::get);
+        if (!keyChanged) {
+            Object[] updateParameters = new Object[changedColumns.cardinality() + keyIndexes.length];
+            int parameter = 0;
+            for (int index = changedColumns.nextSetBit(0); index >= 0; index = changedColumns.nextSetBit(index + 1)) {
+                updateParameters[parameter++] = parameters[index];
+            }
+            for (int index : keyIndexes) {
+                updateParameters[parameter++] = parameters[index];
+            }
+
+            // No returned row means the row does not exist (anymore), fall back to the full upsert
+            int updated = write(forestDatabase, metadata.getUpdateScript(changedColumns), updateParameters);
+            if (updated > 0) {
+                tracker.snapshot(database, object, parameters);
+                return true;
+            }
+            if (updated < 0) {
+                tracker.remove(object);
+                return false;
+            }
+        }
+
+        if (write(forestDatabase, metadata.getUpsertReturningScript(), parameters) <= 0) {
+            tracker.remove(object);
+            return false;
         }
+        tracker.snapshot(database, object, parameters);
+        return true;
+    }
+
+    /**
+     * Compares column values with their last persisted values.
+     *
+     * @return the indexes of the changed columns.
+     */
+    private static BitSet getChangedColumns(Object[] parameters, Object[] snapshot) {
+        BitSet changedColumns = new BitSet(parameters.length);
+        for (int i = 0; i < parameters.length; i++) {
+            if (!Objects.equals(parameters[i], snapshot[i])) {
+                changedColumns.set(i);
+            }
+        }
+        return changedColumns;
+    }
+
+    /**
+     * Asynchronously performs an insert or update operation of multiple objects on the specified database.
+     *
+     * @param database The name of the database where the operation will be performed.
+     * @param objects  The objects to be inserted or updated.
+     * @param <T>      The type of the objects being operated on.
+     */
+    public <T> void insertOrUpdateAllAsync(String database, Collection<T> objects) {
+        List<T> copy = new ArrayList<>(objects);
+        getExecutor().execute(()-> insertOrUpdateAll(database, copy));
+    }
+
+    /**
+     * Performs an insert or update operation of multiple objects on the specified database.
+     * Objects are grouped by class and each group is written by a single batched statement in one transaction.
+     *
+     * @param database The name of the database where the operation will be performed.
+     * @param objects  The objects to be inserted or updated.
+     * @param <T>      The type of the objects being operated on.
+     */
+    public <T> void insertOrUpdateAll(String database, Collection<T> objects) {
+        Map<Class<T>, List<T>> objectsByClass = new LinkedHashMap<>();
+        for (T object : objects) {
+            discardPendingWrite(database, object);
+            objectsByClass.computeIfAbsent((Class<T>) object.getClass(), clazz -> new ArrayList<>()).add(object);
+        }
+
+        objectsByClass.forEach((clazz, list) -> insertOrUpdateBatch(database, clazz, list));
+    }
+
+    /**
+     * Writes objects of a single class using one batched statement in one transaction.
+     *
+     * @param database The name of the database where the operation will be performed.
+     * @param clazz    The class of the objects.
+     * @param objects  The objects to be inserted or updated.
+     * @param <T>      The type of the objects being operated on.
+     * @return true if the transaction was committed.
+     */
+    <T> boolean insertOrUpdateBatch(String database, Class<T> clazz, List<T> objects) {
+        try (MetricsRegistry.Scope scope = enter(database, clazz, Operation.UPSERT)) {
+            DirtyTracker tracker = dirtyTracker;
+            if (tracker != null && !databaseEntityConvertor.getMetadata(clazz).getPrimaryKeys().isEmpty()) {
+                return insertOrUpdateBatchTracked(database, clazz, objects, tracker);
+            }
+
+            boolean written = batch(database, clazz, objects);
+
+            if (written) {
+                objects.forEach(object -> cacheWrite(database, object));
+            } else {
+                objects.forEach(object -> cacheInvalidate(database, object));
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Writes the objects which changed since they were last loaded or saved, using one batched statement.
+     */
+    private <T> boolean insertOrUpdateBatchTracked(String database, Class<T> clazz, List<T> objects, DirtyTracker tracker) {
+        List<T> changed = new ArrayList<>(objects.size());
+        List<Object[]> changedParameters = new ArrayList<>(objects.size());
+        for (T object : objects) {
+            Object[] parameters = databaseEntityConvertor.insertOrUpdateParameters(clazz, object);
+            Object[] snapshot = tracker.getSnapshot(database, object);
+            if (snapshot == null || !Arrays.equals(parameters, snapshot)) {
+                changed.add(object);
+                changedParameters.add(parameters);
+            }
+        }
+
+        if (changed.isEmpty()) {
+            return true;
+        }
+
+        boolean written = batch(database, clazz, changed);
+
+        for (int i = 0; i < changed.size(); i++) {
+            if (written) {
+                tracker.snapshot(database, changed.get(i), changedParameters.get(i));
+                cacheWrite(database, changed.get(i));
+            } else {
+                tracker.remove(changed.get(i));
+                cacheInvalidate(database, changed.get(i));
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Writes objects of a single class using one batched statement, one per shard of a sharded database.
+     */
+    private <T> boolean batch(String database, Class<T> clazz, List<T> objects) {
+        ForestDatabase forestDatabase = getDatabase(database);
+        String script = databaseEntityConvertor.insertOrUpdateScript(clazz);
+        if (!(forestDatabase instanceof ShardedDatabase shardedDatabase)) {
+            return forestDatabase.batch(script, databaseEntityConvertor.insertOrUpdateBatchParameters(clazz, objects), batchSize);
+        }
+
+        boolean written = true;
+        for (Map.Entry<ForestDatabase, List<T>> shard : groupByShard(shardedDatabase, clazz, objects).entrySet()) {
+            written &= shard.getKey().batch(script, databaseEntityConvertor.insertOrUpdateBatchParameters(clazz, shard.getValue()), batchSize);
+        }
+        return written;
+    }
+
+    /**
+     * Asynchronously loads a large amount of objects using the COPY protocol.
+     *
+     * @param database The name of the database where the operation will be performed.
+     * @param clazz    The class of the objects.
+     * @param objects  The objects to be loaded.
+     * @param upsert   If true, existing rows are updated, otherwise the load fails on conflicting rows.
+     * @param <T>      The type of the objects being operated on.
+     * @return A CompletableFuture that, when completed, will yield the number of loaded rows, or -1 if the load failed.
+     */
+    public <T> CompletableFuture<Long> bulkLoadAsync(String database, Class<T> clazz, Iterable<? extends T> objects, boolean upsert) {
+        return CompletableFuture.supplyAsync(()-> bulkLoad(database, clazz, objects, upsert), getExecutor());
+    }
+
+    /**
+     * Loads a large amount of objects using the COPY protocol in a single transaction.
+     * Objects are streamed to the server as they are iterated. With upsert enabled, they are copied into
+     * a temporary staging table first and then merged into the table using the same conflict policy as
+     * {@link #insertOrUpdate(String, Object)}.
+     *
+     * @param database The name of the database where the operation will be performed.
+     * @param clazz    The class of the objects.
+     * @param objects  The objects to be loaded.
+     * @param upsert   If true, existing rows are updated, otherwise the load fails on conflicting rows.
+     * @param <T>      The type of the objects being operated on.
+     * @return The number of loaded rows, or -1 if the load failed and was rolled back. Shards of a sharded database
+     * are loaded one after another, so shards loaded before a failing one stay committed.
+     */
+    public <T> long bulkLoad(String database, Class<T> clazz, Iterable<? extends T> objects, boolean upsert) {
+        // COPY runs on a raw connection, so it is recorded here instead of by the database
+        long start = System.nanoTime();
+        long rows;
+        if (getDatabase(database) instanceof ShardedDatabase shardedDatabase) {
+            List<T> list = new ArrayList<>();
+            objects.forEach(list::add);
+            rows = 0;
+            for (Map.Entry<ForestDatabase, List<T>> shard : groupByShard(shardedDatabase, clazz, list).entrySet()) {
+                long shardRows = copyBulkLoader.load(shard.getKey(), clazz, shard.getValue(), upsert);
+                rows = shardRows < 0 || rows < 0 ? -1 : rows + shardRows;
+            }
+        } else {
+            rows = copyBulkLoader.load(getDatabase(database), clazz, objects, upsert);
+        }
+        metricsRegistry.forDatabase(database).record(new MetricKey(database.toUpperCase(), clazz, Operation.UPSERT),
+                System.nanoTime() - start, Math.max(0, rows), rows < 0);
+        cacheInvalidateAll(database, clazz);
+        return rows;
     }
 
     /**
@@ -167,7 +803,12 @@ public class DatabaseAPI {
      * @param <T>      The type of the object being deleted.
      */
     public <T> void deleteAsync(String database, T object) {
-        Bukkit.getScheduler().runTaskAsynchronously(javaPlugin, ()-> delete(database, object));
+        // Keep the next flush from writing the row, waiting for a running flush is left to the executor
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.discard(database, object, false);
+        }
+        getExecutor().execute(()-> delete(database, object));
     }
 
     /**
@@ -178,7 +819,7 @@ public class DatabaseAPI {
      * @param <T>      The type parameter of the class.
      */
     public <T> void deleteAllAsync(String database, Class<T> clazz) {
-        Bukkit.getScheduler().runTaskAsynchronously(javaPlugin, ()-> deleteAll(database, clazz));
+        getExecutor().execute(()-> deleteAll(database, clazz));
     }
 
     /**
@@ -189,11 +830,29 @@ public class DatabaseAPI {
      * @param <T>      The type of the object being deleted.
      */
     public <T> void delete(String database, T object) {
-        Class<T> clazz = (Class<T>) object.getClass();
-        try {
-            getDatabase(database).query(databaseEntityConvertor.deleteScript(clazz, object));
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
+        try (MetricsRegistry.Scope scope = enter(database, object.getClass(), Operation.DELETE)) {
+            discardPendingWrite(database, object);
+            Class<T> clazz = (Class<T>) object.getClass();
+            getDatabase(database, clazz, object).query(databaseEntityConvertor.deleteScript(clazz),
+                    databaseEntityConvertor.deleteParameters(clazz, object));
+            cacheInvalidate(database, object);
+
+            DirtyTracker tracker = dirtyTracker;
+            if (tracker != null) {
+                tracker.remove(object);
+            }
+        }
+    }
+
+    /**
+     * Drops a queued write of the object, so a pending flush does not restore a deleted row or overwrite a newer one.
+     * If a flush is writing the row right now, waits for it to finish, except inside a transaction of the database,
+     * where the flush could be waiting for a row lock held by the transaction.
+     */
+    private void discardPendingWrite(String database, Object object) {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.discard(database, object, currentTransaction(database) == null);
         }
     }
 
@@ -205,7 +864,248 @@ public class DatabaseAPI {
      * @param <T>      The type parameter of the class.
      */
     public <T> void deleteAll(String database, Class<T> clazz) {
-        getDatabase(database).query(databaseEntityConvertor.deleteAllScript(clazz));
+        try (MetricsRegistry.Scope scope = enter(database, clazz, Operation.DELETE)) {
+            ForestDatabase forestDatabase = getDatabase(database);
+            if (forestDatabase instanceof ShardedDatabase shardedDatabase) {
+                shardedDatabase.executeOnAllShards(databaseEntityConvertor.deleteAllScript(clazz));
+            } else {
+                forestDatabase.query(databaseEntityConvertor.deleteAllScript(clazz));
+            }
+            cacheInvalidateAll(database, clazz);
+        }
+    }
+
+    /**
+     * Asynchronously runs work in a transaction of the specified database.
+     *
+     * @param database The name of the database.
+     * @param work     The work using the transaction.
+     * @return A CompletableFuture that, when completed, will yield true if the transaction was committed.
+     * @see #inTransaction(String, Consumer)
+     */
+    public CompletableFuture<Boolean> inTransactionAsync(String database, Consumer<Transaction> work) {
+        return CompletableFuture.supplyAsync(()-> inTransaction(database, work), getExecutor());
+    }
+
+    /**
+     * Asynchronously runs work in a transaction of the specified database.
+     *
+     * @param database  The name of the database.
+     * @param isolation The isolation level of the transaction.
+     * @param readOnly  If true, the transaction cannot write.
+     * @param work      The work using the transaction.
+     * @return A CompletableFuture that, when completed, will yield true if the transaction was committed.
+     * @see #inTransaction(String, Transaction.Isolation, boolean, Consumer)
+     */
+    public CompletableFuture<Boolean> inTransactionAsync(String database, Transaction.Isolation isolation, boolean readOnly,
+                                                         Consumer<Transaction> work) {
+        return CompletableFuture.supplyAsync(()-> inTransaction(database, isolation, readOnly, work), getExecutor());
+    }
+
+    /**
+     * Runs work in a read-write transaction of the specified database with the {@link Transaction.Isolation#READ_COMMITTED}
+     * isolation level.
+     *
+     * @param database The name of the database.
+     * @param work     The work using the transaction.
+     * @return True if the transaction was committed.
+     * @see #inTransaction(String, Transaction.Isolation, boolean, Consumer)
+     */
+    public boolean inTransaction(String database, Consumer<Transaction> work) {
+        return inTransaction(database, Transaction.Isolation.READ_COMMITTED, false, work);
+    }
+
+    /**
+     * Runs work in a transaction of the specified database. All statements of the work are executed on one connection
+     * and committed at once after the work ends. The transaction is rolled back instead if the work throws an exception,
+     * e.g. a {@link TransactionException} of a failed statement, or marks it using {@link Transaction#setRollbackOnly()}.
+     * <p>
+     * Synchronous calls of this API made by the current thread on the same database join the transaction, so does
+     * a nested transaction of the same database. Asynchronous calls and bulk loads do not.
+     * Transactions of a {@link ReplicaRoutingDatabase} run on its primary.
+     *
+     * @param database  The name of the database.
+     * @param isolation The isolation level of the transaction.
+     * @param readOnly  If true, the transaction cannot write.
+     * @param work      The work using the transaction.
+     * @return True if the transaction was committed.
+     * @throws UnsupportedOperationException if the database does not support transactions, e.g. a {@link ShardedDatabase}.
+     */
+    public boolean inTransaction(String database, Transaction.Isolation isolation, boolean readOnly, Consumer<Transaction> work) {
+        Transaction current = currentTransaction(database);
+        if (current != null) {
+            work.accept(current);
+            return !current.isRollbackOnly();
+        }
+
+        ForestDatabase forestDatabase = getDatabase(database);
+        if (forestDatabase instanceof ReplicaRoutingDatabase routingDatabase) {
+            forestDatabase = routingDatabase.getPrimary();
+        }
+        if (!(forestDatabase instanceof HikariDatabase hikariDatabase)) {
+            throw new UnsupportedOperationException("Database " + database + " does not support transactions");
+        }
+
+        try {
+            hikariDatabase.beginTransaction(isolation.getLevel(), readOnly);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        Transaction transaction = new Transaction(this, database, hikariDatabase, transactions.get());
+        transactions.set(transaction);
+        boolean committed = false;
+        try {
+            work.accept(transaction);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            transaction.setRollbackOnly();
+        } finally {
+            transaction.end();
+            if (transaction.getPrevious() == null) {
+                transactions.remove();
+            } else {
+                transactions.set(transaction.getPrevious());
+            }
+            committed = hikariDatabase.endTransaction(!transaction.isRollbackOnly());
+            endTransaction(database, transaction, committed);
+        }
+        return committed;
+    }
+
+    /**
+     * Drops the state cached during a transaction, which may be stale or, after a rollback, never persisted.
+     */
+    private void endTransaction(String database, Transaction transaction, boolean committed) {
+        transaction.getWrittenObjects().forEach(object -> cacheInvalidate(database, object));
+        transaction.getWrittenClasses().forEach(clazz -> cacheInvalidateAll(database, clazz));
+
+        // Entities loaded by the transaction may hold its uncommitted writes as well
+        DirtyTracker tracker = dirtyTracker;
+        if (!committed && tracker != null) {
+            tracker.removeAll(database);
+        }
+    }
+
+    /**
+     * Finds the transaction of a database the current thread is in.
+     *
+     * @return The transaction, or null if the thread is not in a transaction of the database.
+     */
+    private Transaction currentTransaction(String database) {
+        for (Transaction transaction = transactions.get(); transaction != null; transaction = transaction.getPrevious()) {
+            if (transaction.getDatabase().equalsIgnoreCase(database)) {
+                return transaction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks the statements of an operation for the metrics registry and reports the operation to JFR.
+     */
+    private MetricsRegistry.Scope enter(String database, Class<?> entity, Operation operation) {
+        MetricsRegistry.Scope scope = metricsRegistry.enter(entity, operation);
+        DatabaseOperationEvent event = new DatabaseOperationEvent();
+        event.begin();
+        return () -> {
+            scope.close();
+            if (event.shouldCommit()) {
+                event.database = database.toUpperCase();
+                event.entity = entity;
+                event.operation = operation.name();
+                event.commit();
+            }
+        };
+    }
+
+    /**
+     * Creates a mapper of query results to entities, which also records the loaded state of each entity
+     * if dirty tracking is enabled.
+     */
+    private <T> ResultSetMapper<T> createMapper(String database, Class<T> clazz) {
+        ResultSetMapper<T> mapper = databaseEntityConvertor.createMapper(clazz);
+        DirtyTracker tracker = dirtyTracker;
+        if (tracker == null || databaseEntityConvertor.getMetadata(clazz).getPrimaryKeys().isEmpty()) {
+            return mapper;
+        }
+
+        return new ResultSetMapper<>() {
+            @Override
+            public void prepare(ResultSetMetaData metaData) throws SQLException {
+                mapper.prepare(metaData);
+            }
+
+            @Override
+            public T map(ResultSet result) throws SQLException {
+                T entity = mapper.map(result);
+                if (entity != null) {
+                    tracker.snapshot(database, entity, databaseEntityConvertor.insertOrUpdateParameters(clazz, entity));
+                }
+                return entity;
+            }
+        };
+    }
+
+    /**
+     * Converts a primary key to the key of the entity cache. Key values are compared by their string form,
+     * so e.g. an {@code int} key finds an entity with a {@code long} identifier.
+     */
+    private List<Object> cacheKey(Class<?> clazz, Object key) {
+        Object[] parameters = databaseEntityConvertor.primaryKeyParameters(clazz, key);
+        Object[] cacheKey = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            cacheKey[i] = Objects.toString(parameters[i], null);
+        }
+        return Arrays.asList(cacheKey);
+    }
+
+    /**
+     * Stores a written object in the entity cache of its class, if enabled.
+     */
+    private void cacheWrite(String database, Object object) {
+        if (currentTransaction(database) != null) {
+            // Uncommitted state must not be visible to other threads
+            cacheInvalidate(database, object);
+            return;
+        }
+
+        EntityCache cache = cacheMap.get(object.getClass());
+        if (cache != null) {
+            cache.put(database, cacheKey(object.getClass(), databaseEntityConvertor.getPrimaryKey(object)), object);
+        }
+    }
+
+    /**
+     * Removes an object from the entity cache of its class, if enabled.
+     */
+    private void cacheInvalidate(String database, Object object) {
+        Transaction transaction = currentTransaction(database);
+        if (transaction != null) {
+            // Other threads may cache the old state until the transaction ends, it is invalidated again then
+            transaction.addWrittenObject(object);
+        }
+
+        EntityCache cache = cacheMap.get(object.getClass());
+        if (cache != null) {
+            cache.invalidate(database, cacheKey(object.getClass(), databaseEntityConvertor.getPrimaryKey(object)));
+        }
+    }
+
+    /**
+     * Removes all entries of a database from the entity cache of the class, if enabled.
+     */
+    private void cacheInvalidateAll(String database, Class<?> clazz) {
+        Transaction transaction = currentTransaction(database);
+        if (transaction != null) {
+            transaction.addWrittenClass(clazz);
+        }
+
+        EntityCache cache = cacheMap.get(clazz);
+        if (cache != null) {
+            cache.invalidateAll(database);
+        }
     }
 
     /**
@@ -217,11 +1117,7 @@ public class DatabaseAPI {
      * @return A CompletableFuture that, when completed, will yield a list of found objects.
      */
     public <T> CompletableFuture<List<T>> findAllAsync(String database, Class<T> clazz) {
-        CompletableFuture<List<T>> future = new CompletableFuture<>();
-
-        Bukkit.getScheduler().runTaskAsynchronously(javaPlugin, ()-> future.complete(findAll(database, clazz)));
-
-        return future;
+        return CompletableFuture.supplyAsync(()-> findAll(database, clazz), getExecutor());
     }
 
     /**
@@ -233,17 +1129,11 @@ public class DatabaseAPI {
      * @return A list of found objects.
      */
     public <T> List<T> findAll(String database, Class<T> clazz) {
-        List<T> dataList = new ArrayList<>();
-        List<DBRow> list = getDatabase(database).query(databaseEntityConvertor.createBasicSelect(clazz));
-
-        list.forEach(db -> {
-            T t = databaseEntityConvertor.convertToEntity(clazz, db);
-            if (t == null) {
-                return;
-            }
-            dataList.add(t);
-        });
-        return dataList;
+        try (MetricsRegistry.Scope scope = enter(database, clazz, Operation.SELECT)) {
+            String query = databaseEntityConvertor.createBasicSelect(clazz);
+            return queryAll(database, clazz, Operation.SELECT, forestDatabase -> forestDatabase.query(query,
+                    createMapper(database, clazz)));
+        }
     }
 
     /**
@@ -256,11 +1146,7 @@ public class DatabaseAPI {
      * @return A CompletableFuture that, when completed, will yield a list of found objects.
      */
     public <T> CompletableFuture<List<T>> findAllAsync(String database, Class<T> clazz, String customQuery) {
-        CompletableFuture<List<T>> future = new CompletableFuture<>();
-
-        Bukkit.getScheduler().runTaskAsynchronously(javaPlugin, ()-> future.complete(findAll(database, clazz, customQuery)));
-
-        return future;
+        return CompletableFuture.supplyAsync(()-> findAll(database, clazz, customQuery), getExecutor());
     }
 
     /**
@@ -273,16 +1159,290 @@ public class DatabaseAPI {
      * @return A list of found objects.
      */
     public <T> List<T> findAll(String database, Class<T> clazz, String customQuery) {
-        List<T> dataList = new ArrayList<>();
-        List<DBRow> list = getDatabase(database).query(customQuery);
+        try (MetricsRegistry.Scope scope = enter(database, clazz, Operation.CUSTOM)) {
+            return queryAll(database, clazz, Operation.CUSTOM, forestDatabase -> forestDatabase.query(customQuery,
+                    createMapper(database, clazz)));
+        }
+    }
+
+    /**
+     * Asynchronously finds a record of a given class by its primary key.
+     *
+     * @param database The name of the database to search in.
+     * @param clazz    The class type representing the table to search.
+     * @param keyParts The primary key values, in the order of the key columns.
+     * @param <T>      The type parameter of the class.
+     * @return A CompletableFuture that, when completed, will yield the found object, or null if there is none.
+     */
+    public <T> CompletableFuture<T> findByIdAsync(String database, Class<T> clazz, Object... keyParts) {
+        return CompletableFuture.supplyAsync(()-> findById(database, clazz, keyParts), getExecutor());
+    }
+
+    /**
+     * Finds a record of a given class by its primary key.
+     *
+     * @param database The name of the database to search in.
+     * @param clazz    The class type representing the table to search.
+     * @param keyParts The primary key values, in the order of the key columns.
+     * @param <T>      The type parameter of the class.
+     * @return The found object, or null if there is none.
+     */
+    public <T> T findById(String database, Class<T> clazz, Object... keyParts) {
+        try (MetricsRegistry.Scope scope = enter(database, clazz, Operation.SELECT)) {
+            Object key = keyParts.length == 1 ? keyParts[0] : keyParts;
+            // Reads of a transaction have to see its own writes and its isolation level
+            EntityCache cache = currentTransaction(database) == null ? cacheMap.get(clazz) : null;
+            List<Object> cacheKey = null;
+            long generation = 0;
+            if (cache != null) {
+                cacheKey = cacheKey(clazz, key);
+                EntityCache.CacheEntry entry = cache.get(database, cacheKey);
+                if (entry != null) {
+                    return clazz.cast(entry.getValue());
+                }
+                // A write racing with the query must not be replaced by the row read before it
+                generation = cache.generation(database, cacheKey);
+            }
 
-        list.forEach(db -> {
-            T t = databaseEntityConvertor.convertToEntity(clazz, db);
-            if (t == null) {
-                return;
+            Object[] keyParameters = databaseEntityConvertor.primaryKeyParameters(clazz, key);
+            List<T> list;
+            try {
+                list = getDatabase(database, keyParameters).queryChecked(databaseEntityConvertor.getMetadata(clazz).getFindByIdScript(),
+                        createMapper(database, clazz), keyParameters);
+            } catch (SQLException exception) {
+                // A failed query must not be cached as a missing record
+                exception.printStackTrace();
+                return null;
             }
-            dataList.add(t);
-        });
-        return dataList;
+            T result = list.isEmpty() ? null : list.get(0);
+            if (cache != null) {
+                cache.putIfUnchanged(database, cacheKey, result, generation);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Asynchronously finds records of a given class by their primary keys.
+     *
+     * @param database The name of the database to search in.
+     * @param clazz    The class type representing the table to search.
+     * @param keys     The primary keys, composite keys as {@code Object[]} in the order of the key columns.
+     * @param <T>      The type parameter of the class.
+     * @return A CompletableFuture that, when completed, will yield a list of found objects.
+     */
+    public <T> CompletableFuture<List<T>> findAllByIdsAsync(String database, Class<T> clazz, Collection<?> keys) {
+        List<?> copy = new ArrayList<>(keys);
+
+        return CompletableFuture.supplyAsync(()-> findAllByIds(database, clazz, copy), getExecutor());
+    }
+
+    /**
+     * Finds records of a given class by their primary keys using a single query.
+     * Keys without a matching record are skipped, the order of the result is not defined.
+     *
+     * @param database The name of the database to search in.
+     * @param clazz    The class type representing the table to search.
+     * @param keys     The primary keys, composite keys as {@code Object[]} in the order of the key columns.
+     * @param <T>      The type parameter of the class.
+     * @return A list of found objects.
+     */
+    public <T> List<T> findAllByIds(String database, Class<T> clazz, Collection<?> keys) {
+        try (MetricsRegistry.Scope scope = enter(database, clazz, Operation.SELECT)) {
+            if (keys.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            EntityCache cache = currentTransaction(database) == null ? cacheMap.get(clazz) : null;
+            if (cache == null) {
+                try {
+                    return queryByIds(database, clazz, keys);
+                } catch (SQLException exception) {
+                    exception.printStackTrace();
+                    return new ArrayList<>();
+                }
+            }
+
+            List<T> result = new ArrayList<>(keys.size());
+            Map<List<Object>, Object> missingKeys = new LinkedHashMap<>();
+            Map<List<Object>, Long> generations = new HashMap<>();
+            for (Object key : keys) {
+                if (key == null) {
+                    continue;
+                }
+                List<Object> cacheKey = cacheKey(clazz, key);
+                EntityCache.CacheEntry entry = cache.get(database, cacheKey);
+                if (entry == null) {
+                    missingKeys.put(cacheKey, key);
+                    generations.put(cacheKey, cache.generation(database, cacheKey));
+                } else if (entry.getValue() != null) {
+                    result.add(clazz.cast(entry.getValue()));
+                }
+            }
+
+            if (missingKeys.isEmpty()) {
+                return result;
+            }
+
+            List<T> loaded;
+            try {
+                loaded = queryByIds(database, clazz, missingKeys.values());
+            } catch (SQLException exception) {
+                // A failed query must not be cached as missing records
+                exception.printStackTrace();
+                return result;
+            }
+            for (T object : loaded) {
+                List<Object> cacheKey = cacheKey(clazz, databaseEntityConvertor.getPrimaryKey(object));
+                Long generation = generations.get(cacheKey);
+                if (generation != null) {
+                    cache.putIfUnchanged(database, cacheKey, object, generation);
+                }
+                missingKeys.remove(cacheKey);
+                result.add(object);
+            }
+            missingKeys.keySet().forEach(cacheKey -> cache.putIfUnchanged(database, cacheKey, null, generations.get(cacheKey)));
+            return result;
+        }
+    }
+
+    /**
+     * Loads records by their primary keys, querying each shard of a sharded database for its own keys.
+     *
+     * @throws SQLException if any of the queries failed.
+     */
+    private <T> List<T> queryByIds(String database, Class<T> clazz, Collection<?> keys) throws SQLException {
+        String query = databaseEntityConvertor.getMetadata(clazz).getFindAllByIdsScript();
+        ForestDatabase forestDatabase = getDatabase(database);
+        if (!(forestDatabase instanceof ShardedDatabase shardedDatabase)) {
+            return forestDatabase.queryChecked(query, createMapper(database, clazz), databaseEntityConvertor.primaryKeyArrayParameters(clazz, keys));
+        }
+
+        Map<ForestDatabase, List<Object>> keysByShard = new LinkedHashMap<>();
+        for (Object key : keys) {
+            if (key != null) {
+                ForestDatabase shard = shardedDatabase.getShard(databaseEntityConvertor.primaryKeyParameters(clazz, key));
+                keysByShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(key);
+            }
+        }
+        try {
+            return shardedDatabase.queryAll(keysByShard.keySet(), getExecutor(), shard -> {
+                try (MetricsRegistry.Scope scope = metricsRegistry.enter(clazz, Operation.SELECT)) {
+                    return shard.queryChecked(query, createMapper(database, clazz),
+                            databaseEntityConvertor.primaryKeyArrayParameters(clazz, keysByShard.get(shard)));
+                } catch (SQLException exception) {
+                    throw new CompletionException(exception);
+                }
+            });
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof SQLException cause) {
+                throw cause;
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Asynchronously finds a page of records of a given class, ordered by primary key.
+     *
+     * @param database The name of the database to search in.
+     * @param clazz    The class type representing the table to search.
+     * @param afterKey The primary key of the last record of the previous page, null for the first page.
+     * @param limit    The maximum number of records in the page.
+     * @param <T>      The type parameter of the class.
+     * @return A CompletableFuture that, when completed, will yield the found objects.
+     * @see #findPage(String, Class, Object, int)
+     */
+    public <T> CompletableFuture<List<T>> findPageAsync(String database, Class<T> clazz, Object afterKey, int limit) {
+        return CompletableFuture.supplyAsync(()-> findPage(database, clazz, afterKey, limit), getExecutor());
+    }
+
+    /**
+     * Finds a page of records of a given class, ordered by primary key.
+     * Pages are located by seeking past the key of the previous page, so each page costs the same
+     * regardless of how deep it is. Pass the key of the last returned record (see
+     * {@link DatabaseEntityConvertor#getPrimaryKey(Object)}) to get the next page.
+     *
+     * @param database The name of the database to search in.
+     * @param clazz    The class type representing the table to search.
+     * @param afterKey The primary key of the last record of the previous page, null for the first page.
+     *                 Composite keys are passed as {@code Object[]} in the order of the key columns.
+     * @param limit    The maximum number of records in the page.
+     * @param <T>      The type parameter of the class.
+     * @return A list of found objects, empty if there are no more records.
+     */
+    public <T> List<T> findPage(String database, Class<T> clazz, Object afterKey, int limit) {
+        try (MetricsRegistry.Scope scope = enter(database, clazz, Operation.SELECT)) {
+            EntityMetadata metadata = databaseEntityConvertor.getMetadata(clazz);
+            if (metadata.getPrimaryKeys().isEmpty()) {
+                throw new IllegalArgumentException("Entity " + clazz.getName() + " has no primary key");
+            }
+
+            ForestDatabase forestDatabase = getDatabase(database);
+            boolean sharded = forestDatabase instanceof ShardedDatabase;
+            if (sharded) {
+                for (ColumnMetadata column : metadata.getPrimaryKeys()) {
+                    if (!column.getPlaceholder().equals("?")) {
+                        throw new IllegalArgumentException("Entity " + clazz.getName() + " cannot be paged over shards,"
+                                + " key column " + column.getName() + " has no order known to the client");
+                    }
+                }
+            }
+
+            String query;
+            Object[] parameters;
+            if (afterKey == null) {
+                query = sharded ? metadata.getBinaryFirstPageScript() : metadata.getFirstPageScript();
+                parameters = new Object[]{limit};
+            } else {
+                Object[] keyParameters = databaseEntityConvertor.primaryKeyParameters(clazz, afterKey);
+                query = sharded ? metadata.getBinaryNextPageScript() : metadata.getNextPageScript();
+                parameters = Arrays.copyOf(keyParameters, keyParameters.length + 1);
+                parameters[keyParameters.length] = limit;
+            }
+
+            if (!sharded) {
+                return forestDatabase.query(query, createMapper(database, clazz), parameters);
+            }
+
+            // Every shard returns its own page, the page of the whole table consists of the lowest keys of them
+            List<T> page = queryAll(database, clazz, Operation.SELECT, shard -> shard.query(query,
+                    createMapper(database, clazz), parameters));
+            databaseEntityConvertor.sortByPrimaryKey(clazz, page);
+            return page.size() > limit ? new ArrayList<>(page.subList(0, limit)) : page;
+        }
+    }
+
+    /**
+     * Streams all records of a given class in the specified database.
+     * Rows are fetched in chunks using a server-side cursor and converted one at a time, so memory usage
+     * does not depend on the table size. The stream holds a database connection and must be closed,
+     * preferably using try-with-resources.
+     *
+     * @param database The name of the database to search in.
+     * @param clazz    The class type representing the table to search.
+     * @param <T>      The type parameter of the class.
+     * @return A stream of found objects.
+     */
+    public <T> Stream<T> stream(String database, Class<T> clazz) {
+        try (MetricsRegistry.Scope scope = enter(database, clazz, Operation.SELECT)) {
+            return getDatabase(database).stream(databaseEntityConvertor.createBasicSelect(clazz), fetchSize,
+                    createMapper(database, clazz));
+        }
+    }
+
+    /**
+     * Passes all records of a given class in the specified database to the consumer, one at a time.
+     *
+     * @param database The name of the database to search in.
+     * @param clazz    The class type representing the table to search.
+     * @param consumer The consumer of found objects.
+     * @param <T>      The type parameter of the class.
+     * @see #stream(String, Class)
+     */
+    public <T> void forEach(String database, Class<T> clazz, Consumer<T> consumer) {
+        try (Stream<T> stream = stream(database, clazz)) {
+            stream.forEach(consumer);
+        }
     }
 }
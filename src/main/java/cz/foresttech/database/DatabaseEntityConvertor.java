@@ -1,23 +1,43 @@
 package cz.foresttech.database;
 
-import cz.foresttech.database.annotation.*;
 import cz.foresttech.database.processor.DatabaseValueProcessor;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DatabaseEntityConvertor {
 
     private final DatabaseAPI databaseAPI;
+    private final Map<Class<?>, EntityMetadata> metadataCache;
 
     public DatabaseEntityConvertor(DatabaseAPI databaseAPI) {
         this.databaseAPI = databaseAPI;
+        this.metadataCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Retrieves the cached metadata of an entity class, building it on first access.
+     *
+     * @param clazz the entity class.
+     * @return the metadata of the class.
+     */
+    public EntityMetadata getMetadata(Class<?> clazz) {
+        return metadataCache.computeIfAbsent(clazz, type -> EntityMetadata.create(type, databaseAPI));
+    }
+
+    /**
+     * Drops all cached metadata, e.g. after a new value processor has been registered.
+     */
+    public void invalidateMetadata() {
+        metadataCache.clear();
     }
 
     /**
@@ -28,146 +48,96 @@ public class DatabaseEntityConvertor {
      * @return an instance of T populated with data from the DBRow, or null in case of failure.
      */
     public <T> T convertToEntity(Class<T> clazz, DBRow row) {
+        EntityConversionEvent event = new EntityConversionEvent();
+        event.begin();
         try {
-            T instance = clazz.getDeclaredConstructor().newInstance();
-            getDeclaredFields(clazz)
-                    .forEach(field -> populateFieldFromDBRow(instance, field, row));
+            EntityMetadata metadata = getMetadata(clazz);
+            T instance = clazz.cast(metadata.newInstance());
+            for (ColumnMetadata column : metadata.getColumns()) {
+                populateFieldFromDBRow(instance, column, row);
+            }
             return instance;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
+        } finally {
+            if (event.shouldCommit()) {
+                event.entity = clazz;
+                event.columns = row.getSchema().size();
+                event.commit();
+            }
         }
     }
 
+    /**
+     * Creates a mapper populating entities straight from a result set.
+     * A new mapper shall be created for every query.
+     *
+     * @param clazz the class of the entities.
+     * @return the result set mapper.
+     */
+    public <T> ResultSetMapper<T> createMapper(Class<T> clazz) {
+        return new EntityResultSetMapper<>(clazz, getMetadata(clazz));
+    }
+
     /**
      * Populates a field of an instance with the corresponding value from a DBRow.
      *
      * @param instance the object instance whose field is to be populated.
-     * @param field    the field to be populated.
+     * @param column   the column to be populated.
      * @param row      the DBRow object containing database column data.
      */
-    private <T> void populateFieldFromDBRow(T instance, Field field, DBRow row) {
+    private <T> void populateFieldFromDBRow(T instance, ColumnMetadata column, DBRow row) {
         try {
-            if (!isColumnField(field)) return;
-
-            field.setAccessible(true);
-            String dbName = getDatabaseColumnName(field);
-            if (!row.hasColumn(dbName)) return;
+            int index = row.getSchema().indexOf(column.getName());
+            if (index < 0) return;
 
-            Object fieldValue = getFieldValue(field, row, dbName);
-            field.set(instance, fieldValue);
-        } catch (IllegalAccessException e) {
+            column.getReader().read(column, row, index, instance);
+        } catch (RuntimeException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Checks if a given field is annotated as a column.
-     *
-     * @param field the field to be checked.
-     * @return true if the field is annotated as a column, otherwise false.
-     */
-    private boolean isColumnField(Field field) {
-        return field.getAnnotation(Column.class) != null;
-    }
-
-    /**
-     * Retrieves the database column name associated with a field.
+     * Generates a basic SELECT SQL script for a given class.
      *
-     * @param field the field whose database column name is required.
-     * @return the database column name for the field.
+     * @param clazz the class for which the SELECT script is required.
+     * @return a SELECT SQL script for the given class.
      */
-    private String getDatabaseColumnName(Field field) {
-        Column column = field.getAnnotation(Column.class);
-        return column == null || column.key().isEmpty() ? camelCaseToSnakeCase(field.getName()) : column.key();
+    public String createBasicSelect(Class<?> clazz) {
+        return getMetadata(clazz).getSelectScript();
     }
 
     /**
-     * Gets the value for a field from a DBRow.
+     * Generates a SQL script to delete all records from the table associated with a class.
      *
-     * @param field  the field for which value is required.
-     * @param row    the DBRow containing the data.
-     * @param dbName the name of the database column.
-     * @return the value corresponding to the field from the DBRow.
+     * @param clazz the class for which the DELETE script is required.
+     * @return a DELETE SQL script for the given class.
      */
-    private Object getFieldValue(Field field, DBRow row, String dbName) {
-        String rawValue = row.getString(dbName);
-        Object newValue;
-
-        if (rawValue == null) {
-            if (field.getType() == int.class) {
-                return 0;
-            }
-
-            if (field.getType() == long.class) {
-                return 0L;
-            }
-
-            if (field.getType() == double.class) {
-                return 0.0;
-            }
-
-            if (field.getType() == boolean.class) {
-                return false;
-            }
-
-            if (field.getType() == float.class) {
-                return 0.0f;
-            }
-
-            if (field.getType() == char.class) {
-                return 'x';
-            }
-
-            if (field.isAnnotationPresent(NullableColumn.class)) {
-                return null;
-            }
-
-            return null;
-        }
-
-        if (field.getType().equals(UUID.class)) {
-            newValue = UUID.fromString(rawValue);
-        } else if (field.getType().isEnum()) {
-            newValue = Enum.valueOf((Class<Enum>) field.getType(), rawValue);
-        } else {
-            DatabaseValueProcessor databaseValueProcessor = databaseAPI.getProcessor(field.getType());
-            if (databaseValueProcessor != null) {
-                newValue = databaseValueProcessor.getFromString(field.getGenericType(), rawValue);
-            } else {
-                newValue = row.getObject(dbName);
-            }
-        }
-
-        return newValue;
+    public <T> String deleteAllScript(Class<T> clazz) {
+        return getMetadata(clazz).getDeleteAllScript();
     }
 
     /**
-     * Generates a basic SELECT SQL script for a given class.
+     * Generates a parameterized SQL script to delete a specific record of a class.
+     * The parameters are provided by {@link #deleteParameters(Class, Object)}.
      *
-     * @param clazz the class for which the SELECT script is required.
-     * @return a SELECT SQL script for the given class.
+     * @param clazz the class for which the DELETE script is required.
+     * @return a DELETE SQL script for a specific record of the given class.
      */
-    public String createBasicSelect(Class<?> clazz) {
-        String tableName = getTableName(clazz);
-        return "SELECT * FROM " + tableName + ";";
+    public String deleteScript(Class<?> clazz) {
+        return getMetadata(clazz).getDeleteScript();
     }
 
     /**
-     * Generates a SQL script to delete all records from the table associated with a class.
+     * Collects the parameters of the {@link #deleteScript(Class)} for a class instance.
      *
-     * @param clazz the class for which the DELETE script is required.
-     * @return a DELETE SQL script for the given class.
+     * @param clazz  the class of the object.
+     * @param object the instance of the class to identify the record to be deleted.
+     * @return the primary key values bound to the DELETE script.
      */
-    public <T> String deleteAllScript(Class<T> clazz) {
-        String tableName = getTableName(clazz);
-        if (tableName.isEmpty()) {
-            return null;
-        }
-
-        return "DELETE FROM " +
-                tableName +
-                ";";
+    public <T> Object[] deleteParameters(Class<T> clazz, T object) {
+        return getParameters(getMetadata(clazz).getPrimaryKeys(), object);
     }
 
     /**
@@ -175,375 +145,330 @@ public class DatabaseEntityConvertor {
      *
      * @param clazz  the class for which the DELETE script is required.
      * @param object the instance of the class to identify the record to be deleted.
-     * @return a DELETE SQL script for a specific record of the given class.
+     * @return a DELETE SQL script for a specific record of the given class, with the values inlined.
+     * @deprecated use the parameterized {@link #deleteScript(Class)} with {@link #deleteParameters(Class, Object)}.
      */
+    @Deprecated
     public <T> String deleteScript(Class<T> clazz, T object) throws IllegalAccessException {
-        String tableName = getTableName(clazz);
-        if (tableName.isEmpty()) {
-            return null;
-        }
+        return inlineParameters(deleteScript(clazz), deleteParameters(clazz, object));
+    }
 
-        String condition = processDeleteConditionScript(clazz, object);
-        return String.format("DELETE FROM %s WHERE (%s);", tableName, condition);
+    /**
+     * Generates a parameterized SQL script for inserting or updating a record of a class.
+     * The parameters are provided by {@link #insertOrUpdateParameters(Class, Object)}.
+     *
+     * @param clazz the class for which the script is required.
+     * @return an INSERT or UPDATE SQL script for the given class.
+     */
+    public String insertOrUpdateScript(Class<?> clazz) {
+        return getMetadata(clazz).getUpsertScript();
     }
 
     /**
-     * Generates an SQL script for inserting or updating a record based on a class instance.
+     * Collects the parameters of the {@link #insertOrUpdateScript(Class)} for a class instance.
      *
-     * @param clazz  the class for which the script is required.
+     * @param clazz  the class of the object.
      * @param object the instance of the class for which the record is to be inserted or updated.
-     * @return an INSERT or UPDATE SQL script for the given class instance.
+     * @return the column values bound to the INSERT script.
      */
-    public <T> String insertOrUpdateScript(Class<T> clazz, T object) throws IllegalAccessException {
-        String tableName = getTableName(clazz);
-        if (tableName.isEmpty()) {
-            return null;
-        }
-
-        String columns = getColumnsFromField(clazz);
-        String values = getValuesFromField(clazz, object);
-
-        String conflictPolicy = getConflictPolicy(clazz);
-
-        return String.format("INSERT INTO %s (%s) VALUES (%s) ON CONFLICT (%s) DO UPDATE SET (%s) = (%s);",
-                tableName, columns, values, conflictPolicy, columns, values);
+    public <T> Object[] insertOrUpdateParameters(Class<T> clazz, T object) {
+        return getParameters(getMetadata(clazz).getColumns(), object);
     }
 
     /**
-     * Generates a SQL script to create a table based on a class definition.
+     * Generates an SQL script for inserting or updating a record based on a class instance.
      *
-     * @param clazz the class for which the CREATE TABLE script is required.
-     * @return a CREATE TABLE SQL script based on the class definition.
+     * @param clazz  the class for which the script is required.
+     * @param object the instance of the class for which the record is to be inserted or updated.
+     * @return an INSERT or UPDATE SQL script for the given class instance, with the values inlined.
+     * @deprecated use the parameterized {@link #insertOrUpdateScript(Class)} with
+     * {@link #insertOrUpdateParameters(Class, Object)}.
      */
-    public String generateCreateScript(Class<?> clazz) {
-        String tableName = getTableName(clazz);
-        if (tableName.isEmpty()) {
-            return null;
-        }
-
-        String fieldsDefinition = getFieldsDefinition(clazz);
-        String primaryKeyConstraint = getPrimaryKeyConstraint(clazz);
-
-        return String.format("CREATE TABLE IF NOT EXISTS %s (%s%s);", tableName, fieldsDefinition, primaryKeyConstraint);
+    @Deprecated
+    public <T> String insertOrUpdateScript(Class<T> clazz, T object) throws IllegalAccessException {
+        return inlineParameters(insertOrUpdateScript(clazz), insertOrUpdateParameters(clazz, object));
     }
 
     /**
-     * Processes fields of a class to generate a part of SQL script for delete operations.
+     * Prepares the parameters of {@link #insertOrUpdateScript(Class)} for a batch of instances of one class.
+     * Rows are sorted by primary key, so concurrent batches lock rows in the same order, and only the last
+     * occurrence of each primary key is kept, because one statement cannot update the same row twice.
      *
-     * @param clazz  the class whose fields are to be processed.
-     * @param object the instance of the class.
-     * @return a string representing a part of SQL script.
+     * @param clazz   the class of the objects.
+     * @param objects the instances to be inserted or updated.
+     * @return the parameters of each row.
      */
-    private <T> String processDeleteConditionScript(Class<T> clazz, T object) throws IllegalAccessException {
-        StringBuilder keys = new StringBuilder();
-        StringBuilder values = new StringBuilder();
-
-        for (Field field : getDeclaredFields(clazz)) {
-            if (Modifier.isStatic(field.getModifiers())) {
-                continue;
-            }
-            field.setAccessible(true);
-
-            boolean isPrimaryKey = field.isAnnotationPresent(PrimaryKey.class);
-            if (!isPrimaryKey) continue;
-
-            Column column = field.getAnnotation(Column.class);
-            if (column == null) continue;
-
-            String dbName = getDbName(field, column);
-            Object fieldValue = field.get(object);
-            DatabaseValueProcessor valueProcessor = databaseAPI.getProcessor(field.getType());
-
-            String processedValue = processFieldValue(fieldValue, valueProcessor);
-            keys.append(dbName).append(",");
-            values.append(processedValue).append(",");
+    public <T> List<Object[]> insertOrUpdateBatchParameters(Class<T> clazz, Collection<? extends T> objects) {
+        List<Object[]> rows = new ArrayList<>(objects.size());
+        for (T object : objects) {
+            rows.add(insertOrUpdateParameters(clazz, object));
         }
 
-        if (keys.isEmpty()) return "";
-
-        keys.setLength(keys.length() - 1);
-        values.setLength(values.length() - 1);
-
-        return "(" + keys + ") = (" + values + ")";
-    }
+        int[] keyIndexes = getMetadata(clazz).getPrimaryKeyIndexes();
+        if (keyIndexes.length == 0) {
+            return rows;
+        }
 
-    private <T> String getValuesFromField(Class<T> clazz, T object) throws IllegalAccessException {
-        StringBuilder values = new StringBuilder();
+        Comparator<Object[]> byPrimaryKey = (first, second) -> comparePrimaryKeys(keyIndexes, first, second);
+        rows.sort(byPrimaryKey);
 
-        for (Field field : getDeclaredFields(clazz)) {
-            if (Modifier.isStatic(field.getModifiers())) {
+        List<Object[]> unique = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            if (i + 1 < rows.size() && byPrimaryKey.compare(rows.get(i), rows.get(i + 1)) == 0) {
                 continue;
             }
-            field.setAccessible(true);
-            Column column = field.getAnnotation(Column.class);
-            if (column == null) continue;
-            String dbName = getDbName(field, column);
-            Object fieldValue = field.get(object);
-            DatabaseValueProcessor valueProcessor = databaseAPI.getProcessor(field.getType());
-
-            String processedValue = processFieldValue(fieldValue, valueProcessor);
-            values.append(processedValue).append(",");
+            unique.add(rows.get(i));
         }
-
-        if (!values.isEmpty()) values.setLength(values.length() - 1);
-
-        return values.toString();
+        return unique;
     }
 
-    private <T> String getColumnsFromField(Class<T> clazz) {
-        StringBuilder keys = new StringBuilder();
-
-        for (Field field : getDeclaredFields(clazz)) {
-            if (Modifier.isStatic(field.getModifiers())) {
-                continue;
-            }
-            field.setAccessible(true);
-            Column column = field.getAnnotation(Column.class);
-            if (column == null) continue;
-            String dbName = getDbName(field, column);
-            keys.append(dbName).append(",");
+    /**
+     * Sorts instances of one class by their primary key, in the order of {@link EntityMetadata#getBinaryFirstPageScript()}
+     * for keys with a natural order.
+     *
+     * @param clazz   the class of the objects.
+     * @param objects the instances to be sorted.
+     */
+    public <T> void sortByPrimaryKey(Class<T> clazz, List<T> objects) {
+        int keyColumns = getMetadata(clazz).getPrimaryKeys().size();
+        int[] keyIndexes = new int[keyColumns];
+        for (int i = 0; i < keyColumns; i++) {
+            keyIndexes[i] = i;
         }
 
-        if (!keys.isEmpty()) keys.setLength(keys.length() - 1);
+        List<Map.Entry<Object[], T>> keyed = new ArrayList<>(objects.size());
+        for (T object : objects) {
+            keyed.add(Map.entry(deleteParameters(clazz, object), object));
+        }
+        keyed.sort((first, second) -> comparePrimaryKeys(keyIndexes, first.getKey(), second.getKey()));
 
-        return keys.toString();
+        for (int i = 0; i < keyed.size(); i++) {
+            objects.set(i, keyed.get(i).getValue());
+        }
     }
 
     /**
-     * Processes the value of a field for inclusion in an SQL script.
-     *
-     * @param value     the value to be processed.
-     * @param processor the DatabaseValueProcessor for processing the value.
-     * @return a string representation of the value suitable for SQL script.
+     * Compares two parameter rows by their primary key values.
      */
-    private String processFieldValue(Object value, DatabaseValueProcessor processor) {
-        if (value == null) return "NULL";
-
-        if (processor != null) {
-            value = processor.getValue(value);
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int comparePrimaryKeys(int[] keyIndexes, Object[] first, Object[] second) {
+        for (int index : keyIndexes) {
+            Object a = first[index];
+            Object b = second[index];
+            int result;
+            if (a == null || b == null) {
+                result = a == null ? (b == null ? 0 : -1) : 1;
+            } else if (a instanceof String text && b instanceof String otherText) {
+                result = compareCodePoints(text, otherText);
+            } else if (a instanceof UUID uuid && b instanceof UUID otherUuid) {
+                // The server compares the bytes of UUIDs unsigned
+                result = Long.compareUnsigned(uuid.getMostSignificantBits(), otherUuid.getMostSignificantBits());
+                if (result == 0) {
+                    result = Long.compareUnsigned(uuid.getLeastSignificantBits(), otherUuid.getLeastSignificantBits());
+                }
+            } else if (a instanceof Comparable && a.getClass() == b.getClass()) {
+                result = ((Comparable) a).compareTo(b);
+            } else {
+                result = a.toString().compareTo(b.toString());
+            }
+            if (result != 0) {
+                return result;
+            }
         }
-
-        return "'" + ((value instanceof String) ? escapeString((String) value) : value.toString()) + "'";
+        return 0;
     }
 
     /**
-     * Retrieves the conflict policy for a given class.
-     *
-     * @param clazz the class whose conflict policy is required.
-     * @return a string representing the conflict policy.
+     * Compares strings by code point, i.e. in the order of the "C" collation of UTF-8 databases. Unlike
+     * {@link String#compareTo(String)}, characters outside the Basic Multilingual Plane sort last.
      */
-    private String getConflictPolicy(Class<?> clazz) {
-        DatabaseEntity databaseEntity = clazz.getAnnotation(DatabaseEntity.class);
-        if (databaseEntity != null && !databaseEntity.conflictPolicy().isEmpty()) {
-            return databaseEntity.conflictPolicy();
-        } else {
-            return getPrimaryKey(clazz);
+    private static int compareCodePoints(String first, String second) {
+        int i = 0;
+        int j = 0;
+        while (i < first.length() && j < second.length()) {
+            int a = first.codePointAt(i);
+            int b = second.codePointAt(j);
+            if (a != b) {
+                return Integer.compare(a, b);
+            }
+            i += Character.charCount(a);
+            j += Character.charCount(b);
         }
+        return Integer.compare(first.length() - i, second.length() - j);
     }
 
     /**
-     * Builds a SQL fields definition part for a CREATE TABLE script based on a class definition.
+     * Converts a primary key to the parameters bound to primary key columns, in the order of the columns.
      *
-     * @param clazz the class whose fields are to be defined in SQL.
-     * @return a string representing the fields definition for SQL CREATE TABLE script.
+     * @param clazz the entity class.
+     * @param key   the key value, or an {@code Object[]} with one value per column for composite keys.
+     * @return the key parameters.
+     * @throws IllegalArgumentException if the entity has no primary key or the key does not match it.
      */
-    private String getFieldsDefinition(Class<?> clazz) {
-        StringBuilder definition = new StringBuilder();
-
-        for (Field field : getDeclaredFields(clazz)) {
-            if (field.isAnnotationPresent(Column.class)) {
-                Column column = field.getAnnotation(Column.class);
-                String dbName = getDbName(field, column);
-                definition.append(dbName).append(" ").append(getSqlType(field, column)).append(",");
-            }
+    public Object[] primaryKeyParameters(Class<?> clazz, Object key) {
+        List<ColumnMetadata> primaryKeys = getMetadata(clazz).getPrimaryKeys();
+        if (primaryKeys.isEmpty()) {
+            throw new IllegalArgumentException("Entity " + clazz.getName() + " has no primary key");
         }
 
-        if (!definition.isEmpty()) {
-            definition.setLength(definition.length() - 1); // remove trailing comma
+        Object[] keyParts = key instanceof Object[] ? (Object[]) key : new Object[]{key};
+        if (keyParts.length != primaryKeys.size()) {
+            throw new IllegalArgumentException("Entity " + clazz.getName() + " has a primary key of "
+                    + primaryKeys.size() + " column(s), " + keyParts.length + " value(s) given");
         }
 
-        return definition.toString();
+        Object[] parameters = new Object[keyParts.length];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = toParameter(primaryKeys.get(i), keyParts[i]);
+        }
+        return parameters;
     }
 
     /**
-     * Determines the SQL type of a field based on its annotations and type.
+     * Converts multiple primary keys to the parameters of {@link EntityMetadata#getFindAllByIdsScript()},
+     * i.e. one text array per primary key column. Null keys are skipped.
      *
-     * @param field  the field whose SQL type is needed.
-     * @param column the Column annotation of the field.
-     * @return a string representing the SQL type of the field.
+     * @param clazz the entity class.
+     * @param keys  the keys, composite keys as {@code Object[]} in the order of the key columns.
+     * @return the key array parameters.
+     * @throws IllegalArgumentException if the entity has no primary key or any key does not match it.
      */
-    private String getSqlType(Field field, Column column) {
-        StringBuilder sqlTypeBuilder = new StringBuilder();
-
-        // Retrieve custom database value processor, if available
-        DatabaseValueProcessor valueProcessor = databaseAPI.getProcessor(field.getType());
-        if (valueProcessor != null) {
-            sqlTypeBuilder.append(valueProcessor.getType());
-        } else if (!column.type().isEmpty()) {
-            // Use type specified in the Column annotation
-            sqlTypeBuilder.append(column.type());
-        } else {
-            // Default handling for various Java types
-            Class<?> fieldType = field.getType();
-
-            if (fieldType == String.class) {
-                if (field.isAnnotationPresent(Text.class)) {
-                    Text textAnnotation = field.getAnnotation(Text.class);
-                    if (textAnnotation.customLength() > 10485760 || textAnnotation.customLength() < 0) {
-                        sqlTypeBuilder.append("TEXT");
-                    } else {
-                        sqlTypeBuilder.append(String.format("VARCHAR(%d)", textAnnotation.customLength()));
-                    }
-                } else {
-                    sqlTypeBuilder.append("VARCHAR(30)");
-                }
-            } else if (fieldType == int.class) {
-                sqlTypeBuilder.append("INTEGER");
-            } else if (fieldType == long.class) {
-                sqlTypeBuilder.append("BIGINT");
-            } else if (fieldType == double.class) {
-                sqlTypeBuilder.append("DOUBLE PRECISION");
-            } else if (fieldType == boolean.class) {
-                sqlTypeBuilder.append("BOOLEAN");
-            } else if (fieldType == UUID.class) {
-                sqlTypeBuilder.append("VARCHAR(36)");
-            } else if (fieldType == Timestamp.class) {
-                sqlTypeBuilder.append("TIMESTAMP");
-            } else if (fieldType.isEnum()) {
-                sqlTypeBuilder.append("TEXT");
-            } else if (fieldType == List.class) {
-                sqlTypeBuilder.append("TEXT");
-            } else if (field.isAnnotationPresent(AutoIncrement.class)) {
-                sqlTypeBuilder.append("SERIAL");
-            } else {
-                sqlTypeBuilder.append("TEXT");
-            }
+    public Object[] primaryKeyArrayParameters(Class<?> clazz, Collection<?> keys) {
+        int keyColumns = getMetadata(clazz).getPrimaryKeys().size();
+        List<String[]> columnArrays = new ArrayList<>(keyColumns);
+        for (int i = 0; i < keyColumns; i++) {
+            columnArrays.add(new String[keys.size()]);
         }
 
-        // Append NOT NULL constraint
-        if (field.isAnnotationPresent(PrimaryKey.class) || !field.isAnnotationPresent(NullableColumn.class)) {
-            sqlTypeBuilder.append(" NOT NULL");
+        int row = 0;
+        for (Object key : keys) {
+            if (key == null) {
+                continue;
+            }
+            Object[] parameters = primaryKeyParameters(clazz, key);
+            for (int i = 0; i < keyColumns; i++) {
+                columnArrays.get(i)[row] = parameters[i] == null ? null : parameters[i].toString();
+            }
+            row++;
         }
 
-        // Append UNIQUE constraint
-        if (field.isAnnotationPresent(Unique.class)) {
-            sqlTypeBuilder.append(" UNIQUE");
+        Object[] arrays = new Object[keyColumns];
+        for (int i = 0; i < keyColumns; i++) {
+            arrays[i] = Arrays.copyOf(columnArrays.get(i), row);
         }
-
-        return sqlTypeBuilder.toString();
-
+        return arrays;
     }
 
     /**
-     * Builds the primary key constraint part of a SQL CREATE TABLE script based on a class definition.
+     * Reads the primary key of an entity, in the form accepted by {@link #primaryKeyParameters(Class, Object)}.
      *
-     * @param clazz the class whose primary key constraint is to be built.
-     * @return a string representing the primary key constraint for SQL CREATE TABLE script.
+     * @param object the entity instance.
+     * @return the key value, or an {@code Object[]} for composite keys.
      */
-    private String getPrimaryKeyConstraint(Class<?> clazz) {
-        List<String> primaryKeys = getDeclaredFields(clazz).stream()
-                .filter(f -> f.isAnnotationPresent(PrimaryKey.class))
-                .map(f -> getDbName(f, f.getAnnotation(Column.class)))
-                .collect(Collectors.toList());
-
-        if (!primaryKeys.isEmpty()) {
-            return ", CONSTRAINT " + clazz.getSimpleName() + "_pk PRIMARY KEY (" + String.join(", ", primaryKeys) + ")";
+    public Object getPrimaryKey(Object object) {
+        List<ColumnMetadata> primaryKeys = getMetadata(object.getClass()).getPrimaryKeys();
+        if (primaryKeys.size() == 1) {
+            return primaryKeys.get(0).getAccessor().get(object);
         }
 
-        return "";
+        Object[] key = new Object[primaryKeys.size()];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = primaryKeys.get(i).getAccessor().get(object);
+        }
+        return key;
     }
 
     /**
-     * Extracts the primary key field names from a class definition and formats them as a comma-separated list in snake case.
+     * Generates a SQL script to create a table based on a class definition.
      *
-     * @param clazz the class from which to extract the primary key.
-     * @return a string representing the primary key fields in snake case, or null if no primary keys are defined.
+     * @param clazz the class for which the CREATE TABLE script is required.
+     * @return a CREATE TABLE SQL script based on the class definition.
      */
-    private static String getPrimaryKey(Class<?> clazz) {
-        return getDeclaredFields(clazz).stream()
-                .filter(field -> field.isAnnotationPresent(PrimaryKey.class))
-                .map(field -> {
-                    Column column = field.getAnnotation(Column.class);
-                    return getDbName(field, column);
-                })
-                .collect(Collectors.joining(", "));
+    public String generateCreateScript(Class<?> clazz) {
+        return getMetadata(clazz).getCreateScript();
     }
 
     /**
-     * Retrieves the table name for a given class, based on its annotations.
+     * Replaces the placeholders of a parameterized script with quoted literals of the parameters.
+     * Placeholders inside quoted identifiers are kept.
      *
-     * @param clazz the class whose table name is required.
-     * @return the table name in snake case.
+     * @param script     the parameterized script, or null.
+     * @param parameters the parameters in the order of the placeholders.
+     * @return the script with the values inlined, or null if there is no script.
      */
-    private static String getTableName(Class<?> clazz) {
-        String tableName = null;
-
-        if (clazz.isAnnotationPresent(DatabaseEntity.class)) {
-            DatabaseEntity databaseEntity = clazz.getAnnotation(DatabaseEntity.class);
-            tableName = databaseEntity.table();
+    private static String inlineParameters(String script, Object[] parameters) {
+        if (script == null) {
+            return null;
         }
 
-        if (tableName == null || tableName.isEmpty()) {
-            tableName = camelCaseToSnakeCase(clazz.getSimpleName());
-        }
+        StringBuilder result = new StringBuilder(script.length() + parameters.length * 16);
+        boolean quoted = false;
+        int parameter = 0;
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            }
+            if (c != '?' || quoted) {
+                result.append(c);
+                continue;
+            }
 
-        if (tableName.isEmpty()) {
-            return tableName;
+            Object value = parameters[parameter++];
+            result.append(value == null ? "NULL" : "'" + value.toString().replace("'", "''") + "'");
         }
-
-        return "\"" + tableName + "\"";
+        return result.toString();
     }
 
     /**
-     * Retrieves the database column name for a given field, based on its annotations.
+     * Reads the values of the given columns and converts them to statement parameters.
      *
-     * @param field  the field whose database column name is required.
-     * @param column the Column annotation of the field.
-     * @return the database column name in snake case.
+     * @param columns the columns to be read.
+     * @param object  the entity instance.
+     * @return the parameters in the order of the columns.
      */
-    private static String getDbName(Field field, Column column) {
-        return column.key().isEmpty() ? camelCaseToSnakeCase(field.getName()) : column.key();
+    private Object[] getParameters(List<ColumnMetadata> columns, Object object) {
+        Object[] parameters = new Object[columns.size()];
+        for (int i = 0; i < parameters.length; i++) {
+            ColumnMetadata column = columns.get(i);
+            parameters[i] = toParameter(column, column.getAccessor().get(object));
+        }
+        return parameters;
     }
 
     /**
-     * Converts a camelCase string to a snake_case string.
+     * Converts a field value to a value bound to a prepared statement.
+     * Values of character columns and values without a native JDBC mapping are bound as strings,
+     * the entity scripts cast the latter to the column type.
      *
-     * @param input the camelCase string to be converted.
-     * @return the snake_case version of the string.
+     * @param column the column of the value.
+     * @param value  the field value.
+     * @return the statement parameter.
      */
-    private static String camelCaseToSnakeCase(String input) {
-        return input.replaceAll("([a-z])([A-Z]+)", "$1_$2").toLowerCase();
-    }
+    public Object toParameter(ColumnMetadata column, Object value) {
+        if (value == null) return null;
 
-    /**
-     * Escapes a string for safe inclusion in an SQL script.
-     *
-     * @param input the string to be escaped.
-     * @return the escaped string.
-     */
-    private static String escapeString(String input) {
-        if (input == null) {
-            return null;
+        DatabaseValueProcessor processor = column.getProcessor();
+        if (processor != null) {
+            return processor.getValue(value);
         }
 
-        return input.replace("'", "''");
-    }
+        if (value instanceof Enum<?> enumValue) {
+            return enumValue.name();
+        }
 
-    /**
-     * Retrieves all declared fields of a class, including inherited fields.
-     *
-     * @param clazz the class whose fields are required.
-     * @return a list of all declared fields of the class.
-     */
-    private static List<Field> getDeclaredFields(Class<?> clazz) {
-        List<Field> fieldList = new ArrayList<>();
+        if (column.isCharacterType()) {
+            return value.toString();
+        }
 
-        if (clazz.getSuperclass() != null && clazz != Object.class) {
-            fieldList.addAll(getDeclaredFields(clazz.getSuperclass()));
+        if (value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof Boolean || value instanceof String || value instanceof Timestamp
+                || value instanceof Float || value instanceof Short || value instanceof BigDecimal
+                || value instanceof UUID) {
+            return value;
         }
-        fieldList.addAll(Arrays.asList(clazz.getDeclaredFields()));
 
-        return fieldList;
+        return value.toString();
     }
 
 }
@@ -0,0 +1,27 @@
+package cz.foresttech.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a {@link DatabaseAPI} operation, including all statements it executes.
+ */
+@Name("cz.foresttech.database.Operation")
+@Label("Database Operation")
+@Category("ForestDatabase")
+@Description("Database operation of an entity, e.g. a lookup or an upsert")
+final class DatabaseOperationEvent extends Event {
+
+    @Label("Database")
+    String database;
+
+    @Label("Entity")
+    Class<?> entity;
+
+    @Label("Operation")
+    String operation;
+
+}
@@ -0,0 +1,124 @@
+package cz.foresttech.database;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the last persisted column values of entity instances, so unchanged columns do not have to be written.
+ * Instances are referenced weakly and compared by identity, so tracking neither keeps entities in memory
+ * nor depends on their {@code equals} implementation.
+ * Snapshots are kept in a concurrent map, so entities loaded by parallel queries are recorded without contention.
+ */
+class DirtyTracker {
+
+    private final Map<IdentityKey, Snapshot> snapshots;
+    private final ReferenceQueue<Object> referenceQueue;
+
+    DirtyTracker() {
+        this.snapshots = new ConcurrentHashMap<>();
+        this.referenceQueue = new ReferenceQueue<>();
+    }
+
+    /**
+     * Stores the values of an entity as they are in the database.
+     *
+     * @param database   the name of the database.
+     * @param entity     the entity instance.
+     * @param parameters the column values, as returned by {@link DatabaseEntityConvertor#insertOrUpdateParameters(Class, Object)}.
+     */
+    void snapshot(String database, Object entity, Object[] parameters) {
+        expungeStaleEntries();
+
+        Object[] values = parameters.clone();
+        for (int i = 0; i < values.length; i++) {
+            // Timestamps are mutable and passed to statements as they are, keep a copy of the persisted value
+            if (values[i] instanceof Timestamp timestamp) {
+                values[i] = timestamp.clone();
+            }
+        }
+        snapshots.put(new IdentityKey(entity, referenceQueue), new Snapshot(database.toUpperCase(), values));
+    }
+
+    /**
+     * Retrieves the last persisted values of an entity.
+     *
+     * @param database the name of the database.
+     * @param entity   the entity instance.
+     * @return the column values, or null if the entity has not been loaded from or saved to the database.
+     */
+    Object[] getSnapshot(String database, Object entity) {
+        expungeStaleEntries();
+
+        Snapshot snapshot = snapshots.get(new IdentityKey(entity, null));
+        if (snapshot == null || !snapshot.database().equals(database.toUpperCase())) {
+            return null;
+        }
+        return snapshot.values();
+    }
+
+    /**
+     * Forgets the persisted values of an entity, e.g. after it has been deleted or a write has failed.
+     *
+     * @param entity the entity instance.
+     */
+    void remove(Object entity) {
+        expungeStaleEntries();
+        snapshots.remove(new IdentityKey(entity, null));
+    }
+
+    /**
+     * Forgets the persisted values of all entities of a database, e.g. after a transaction has been rolled back.
+     *
+     * @param database the name of the database.
+     */
+    void removeAll(String database) {
+        expungeStaleEntries();
+        String name = database.toUpperCase();
+        snapshots.values().removeIf(snapshot -> snapshot.database().equals(name));
+    }
+
+    private void expungeStaleEntries() {
+        Object reference;
+        while ((reference = referenceQueue.poll()) != null) {
+            snapshots.remove(reference);
+        }
+    }
+
+    private record Snapshot(String database, Object[] values) {
+    }
+
+    /**
+     * Weak reference to an entity, equal to other keys referencing the same instance.
+     */
+    private static final class IdentityKey extends WeakReference<Object> {
+
+        private final int hash;
+
+        private IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof IdentityKey key)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == key.get();
+        }
+
+    }
+
+}
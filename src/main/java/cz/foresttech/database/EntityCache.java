@@ -0,0 +1,275 @@
+package cz.foresttech.database;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded read cache of entities of a single class, keyed by database and primary key.
+ * <p>
+ * Entries are evicted in least-recently-used order once the maximum size is exceeded and expire after
+ * a fixed time since their last access or write. Keys without a record can be cached as well, so repeated
+ * lookups of missing rows do not reach the database.
+ * <p>
+ * Entries loaded by a query are only stored if no write of the same key happened since the lookup missed,
+ * which is tracked by generations of key stripes, so a slow read cannot replace a newer entry with an older row.
+ * <p>
+ * Cached entities are shared by all callers and must be treated as read-only unless they are saved again.
+ */
+public final class EntityCache {
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final int maximumSize;
+    private final long expireAfterAccessNanos;
+    private final long expireAfterWriteNanos;
+    private final boolean cacheMissing;
+    private final LinkedHashMap<CacheKey, CacheEntry> entries;
+    private final long[] generations;
+
+    private final LongAdder hitCount;
+    private final LongAdder missCount;
+    private final LongAdder evictionCount;
+
+    /**
+     * @param maximumSize       the maximum number of cached keys.
+     * @param expireAfterAccess the time after the last read or write an entry expires, null to disable.
+     * @param expireAfterWrite  the time after the last write an entry expires, null to disable.
+     * @param cacheMissing      if true, keys without a record are cached as well.
+     */
+    EntityCache(int maximumSize, Duration expireAfterAccess, Duration expireAfterWrite, boolean cacheMissing) {
+        this.maximumSize = maximumSize;
+        this.expireAfterAccessNanos = expireAfterAccess == null ? 0 : expireAfterAccess.toNanos();
+        this.expireAfterWriteNanos = expireAfterWrite == null ? 0 : expireAfterWrite.toNanos();
+        this.cacheMissing = cacheMissing;
+        this.hitCount = new LongAdder();
+        this.missCount = new LongAdder();
+        this.evictionCount = new LongAdder();
+        this.generations = new long[GENERATION_STRIPES];
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                if (size() <= EntityCache.this.maximumSize) {
+                    return false;
+                }
+                evictionCount.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Looks up a cached entry and records a hit or a miss.
+     *
+     * @param database the name of the database.
+     * @param key      the primary key parameters of the entity.
+     * @return the entry, or null if the key is not cached. The value of the entry is null for a cached missing key.
+     */
+    synchronized CacheEntry get(String database, List<Object> key) {
+        CacheKey cacheKey = new CacheKey(database.toUpperCase(), key);
+        CacheEntry entry = entries.get(cacheKey);
+        long now = System.nanoTime();
+        if (entry != null && isExpired(entry, now)) {
+            entries.remove(cacheKey);
+            evictionCount.increment();
+            entry = null;
+        }
+
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+
+        entry.accessTime = now;
+        hitCount.increment();
+        return entry;
+    }
+
+    /**
+     * Returns the generation of a key, which changes with every write or invalidation of the key.
+     * It is read before a missing key is loaded and passed to {@link #putIfUnchanged(String, List, Object, long)}.
+     *
+     * @param database the name of the database.
+     * @param key      the primary key parameters of the entity.
+     * @return the current generation of the key.
+     */
+    synchronized long generation(String database, List<Object> key) {
+        return generations[stripe(new CacheKey(database.toUpperCase(), key))];
+    }
+
+    /**
+     * Caches an entity written to the database.
+     *
+     * @param database the name of the database.
+     * @param key      the primary key parameters of the entity.
+     * @param entity   the written entity.
+     */
+    synchronized void put(String database, List<Object> key, Object entity) {
+        CacheKey cacheKey = new CacheKey(database.toUpperCase(), key);
+        generations[stripe(cacheKey)]++;
+        store(cacheKey, entity);
+    }
+
+    /**
+     * Caches an entity loaded from the database, unless the key was written or invalidated since the generation
+     * was read, in which case the loaded entity may be older than the database.
+     *
+     * @param database   the name of the database.
+     * @param key        the primary key parameters of the entity.
+     * @param entity     the entity, or null if there is no record with the key.
+     * @param generation the generation of the key read before the entity was loaded.
+     * @return true if the entity was cached.
+     */
+    synchronized boolean putIfUnchanged(String database, List<Object> key, Object entity, long generation) {
+        CacheKey cacheKey = new CacheKey(database.toUpperCase(), key);
+        if (generations[stripe(cacheKey)] != generation) {
+            return false;
+        }
+        store(cacheKey, entity);
+        return true;
+    }
+
+    private void store(CacheKey cacheKey, Object entity) {
+        if (entity == null && !cacheMissing) {
+            entries.remove(cacheKey);
+            return;
+        }
+
+        long now = System.nanoTime();
+        entries.put(cacheKey, new CacheEntry(entity, now));
+    }
+
+    /**
+     * Removes a single key from the cache.
+     *
+     * @param database the name of the database.
+     * @param key      the primary key parameters of the entity.
+     */
+    synchronized void invalidate(String database, List<Object> key) {
+        CacheKey cacheKey = new CacheKey(database.toUpperCase(), key);
+        generations[stripe(cacheKey)]++;
+        entries.remove(cacheKey);
+    }
+
+    /**
+     * Removes all keys of a single database from the cache.
+     *
+     * @param database the name of the database.
+     */
+    synchronized void invalidateAll(String database) {
+        String name = database.toUpperCase();
+        advanceAllGenerations();
+        entries.keySet().removeIf(key -> key.database().equals(name));
+    }
+
+    /**
+     * Removes all keys from the cache.
+     */
+    public synchronized void invalidateAll() {
+        advanceAllGenerations();
+        entries.clear();
+    }
+
+    private void advanceAllGenerations() {
+        for (int i = 0; i < generations.length; i++) {
+            generations[i]++;
+        }
+    }
+
+    private static int stripe(CacheKey cacheKey) {
+        return Math.floorMod(cacheKey.hashCode(), GENERATION_STRIPES);
+    }
+
+    /**
+     * Removes all expired entries. Expired entries are otherwise removed when they are looked up or evicted.
+     */
+    public synchronized void cleanUp() {
+        long now = System.nanoTime();
+        Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (isExpired(iterator.next(), now)) {
+                iterator.remove();
+                evictionCount.increment();
+            }
+        }
+    }
+
+    private boolean isExpired(CacheEntry entry, long now) {
+        return expireAfterWriteNanos > 0 && now - entry.writeTime >= expireAfterWriteNanos
+                || expireAfterAccessNanos > 0 && now - entry.accessTime >= expireAfterAccessNanos;
+    }
+
+    /**
+     * @return the number of cached keys, including expired entries not removed yet.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of lookups served from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return the number of lookups which had to query the database.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the number of entries removed because of the size limit or expiration.
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * @return the ratio of lookups served from the cache, or 1 if there were no lookups.
+     */
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 1.0 : (double) hits / total;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStats() {
+        hitCount.reset();
+        missCount.reset();
+        evictionCount.reset();
+    }
+
+    private record CacheKey(String database, List<Object> key) {
+    }
+
+    static final class CacheEntry {
+
+        private final Object value;
+        private final long writeTime;
+        private long accessTime;
+
+        private CacheEntry(Object value, long now) {
+            this.value = value;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+
+        /**
+         * @return the cached entity, or null if the key has no record.
+         */
+        Object getValue() {
+            return value;
+        }
+
+    }
+
+}
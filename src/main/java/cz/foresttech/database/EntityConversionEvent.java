@@ -0,0 +1,26 @@
+package cz.foresttech.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of converting a {@link DBRow} to an entity. Emitted for every row, so it is disabled by default.
+ */
+@Name("cz.foresttech.database.EntityConversion")
+@Label("Entity Conversion")
+@Category("ForestDatabase")
+@Description("Conversion of a single row to an entity")
+@Enabled(false)
+final class EntityConversionEvent extends Event {
+
+    @Label("Entity")
+    Class<?> entity;
+
+    @Label("Columns")
+    int columns;
+
+}
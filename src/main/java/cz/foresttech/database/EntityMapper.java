@@ -0,0 +1,161 @@
+package cz.foresttech.database;
+
+/**
+ * Reflection-free access to the columns of a single entity class.
+ * Implementations named {@code <Entity>Mapper} are generated at build time by
+ * {@link cz.foresttech.database.apt.EntityMapperProcessor} and picked up automatically by {@link EntityMetadata}.
+ *
+ * @param <T> the entity type.
+ */
+public interface EntityMapper<T> {
+
+    /**
+     * @return the unquoted table name the mapper was generated for.
+     */
+    String getTableName();
+
+    /**
+     * @return the column names, in the order used by {@link #get(Object, int)} and {@link #set(Object, int, Object)}.
+     */
+    String[] getColumnNames();
+
+    /**
+     * @return the names of entity columns the mapper does not access, e.g. because their fields are private.
+     * Such columns are accessed at runtime instead.
+     */
+    default String[] getRuntimeColumnNames() {
+        return new String[0];
+    }
+
+    /**
+     * @return a new instance of the entity created by its no-argument constructor.
+     */
+    T newInstance();
+
+    /**
+     * Reads the value of a column.
+     *
+     * @param entity the entity instance.
+     * @param column index of the column in {@link #getColumnNames()}.
+     * @return the current value of the column.
+     */
+    Object get(T entity, int column);
+
+    /**
+     * Writes the value of a column.
+     *
+     * @param entity the entity instance.
+     * @param column index of the column in {@link #getColumnNames()}.
+     * @param value  the new value, primitives are passed boxed.
+     */
+    void set(T entity, int column, Object value);
+
+    /**
+     * Reads the value of a {@code int} column without boxing. Generated mappers override this method
+     * for their {@code int} columns.
+     *
+     * @param entity the entity instance.
+     * @param column index of the column in {@link #getColumnNames()}.
+     * @return the current value of the column.
+     */
+    default int getInt(T entity, int column) {
+        return (Integer) get(entity, column);
+    }
+
+    /**
+     * Writes the value of a {@code int} column without boxing. Generated mappers override this method
+     * for their {@code int} columns.
+     *
+     * @param entity the entity instance.
+     * @param column index of the column in {@link #getColumnNames()}.
+     * @param value  the new value.
+     */
+    default void setInt(T entity, int column, int value) {
+        set(entity, column, value);
+    }
+
+    /**
+     * Reads the value of a {@code long} column without boxing. Generated mappers override this method
+     * for their {@code long} columns.
+     *
+     * @param entity the entity instance.
+     * @param column index of the column in {@link #getColumnNames()}.
+     * @return the current value of the column.
+     */
+    default long getLong(T entity, int column) {
+        return (Long) get(entity, column);
+    }
+
+    /**
+     * Writes the value of a {@code long} column without boxing. Generated mappers override this method
+     * for their {@code long} columns.
+     *
+     * @param entity the entity instance.
+     * @param column index of the column in {@link #getColumnNames()}.
+     * @param value  the new value.
+     */
+    default void setLong(T entity, int column, long value) {
+        set(entity, column, value);
+    }
+
+    /**
+     * Reads the value of a {@code double} column without boxing. Generated mappers override this method
+     * for their {@code double} columns.
+     *
+     * @param entity the entity instance.
+     * @param column index of the column in {@link #getColumnNames()}.
+     * @return the current value of the column.
+     */
+    default double getDouble(T entity, int column) {
+        return (Double) get(entity, column);
+    }
+
+    /**
+     * Writes the value of a {@code double} column without boxing. Generated mappers override this method
+     * for their {@code double} columns.
+     *
+     * @param entity the entity instance.
+     * @param column index of the column in {@link #getColumnNames()}.
+     * @param value  the new value.
+     */
+    default void setDouble(T entity, int column, double value) {
+        set(entity, column, value);
+    }
+
+    /**
+     * Reads the value of a {@code boolean} column without boxing. Generated mappers override this method
+     * for their {@code boolean} columns.
+     *
+     * @param entity the entity instance.
+     * @param column index of the column in {@link #getColumnNames()}.
+     * @return the current value of the column.
+     */
+    default boolean getBoolean(T entity, int column) {
+        return (Boolean) get(entity, column);
+    }
+
+    /**
+     * Writes the value of a {@code boolean} column without boxing. Generated mappers override this method
+     * for their {@code boolean} columns.
+     *
+     * @param entity the entity instance.
+     * @param column index of the column in {@link #getColumnNames()}.
+     * @param value  the new value.
+     */
+    default void setBoolean(T entity, int column, boolean value) {
+        set(entity, column, value);
+    }
+
+    /**
+     * Resolves the name of the generated mapper class for an entity class.
+     *
+     * @param clazz the entity class.
+     * @return the fully qualified name of the mapper class.
+     */
+    static String getMapperClassName(Class<?> clazz) {
+        String packageName = clazz.getPackageName();
+        String simpleName = clazz.getName().substring(packageName.isEmpty() ? 0 : packageName.length() + 1);
+        return (packageName.isEmpty() ? "" : packageName + ".") + simpleName.replace('$', '_') + "Mapper";
+    }
+
+}
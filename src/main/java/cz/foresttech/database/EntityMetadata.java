@@ -0,0 +1,647 @@
+package cz.foresttech.database;
+
+import cz.foresttech.database.annotation.*;
+import cz.foresttech.database.processor.DatabaseValueProcessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable, precomputed description of a database entity class.
+ * Holds everything the {@link DatabaseEntityConvertor} needs to know about the class, so the class hierarchy,
+ * annotations and naming rules are only inspected once per class.
+ */
+public final class EntityMetadata {
+
+    private final Class<?> type;
+    private final Constructor<?> constructor;
+    private final MethodHandle constructorHandle;
+    private final EntityMapper<Object> mapper;
+    private final String tableName;
+    private final List<ColumnMetadata> columns;
+    private final List<ColumnMetadata> primaryKeys;
+    private final int[] primaryKeyIndexes;
+    private final String columnList;
+    private final String conflictTarget;
+    private final String createScript;
+    private final String selectScript;
+    private final String deleteAllScript;
+    private final String upsertClause;
+    private final String upsertScript;
+    private final String upsertReturningScript;
+    private final String keyColumns;
+    private final Map<BitSet, String> updateScripts;
+    private final String deleteScript;
+    private final String firstPageScript;
+    private final String nextPageScript;
+    private final String binaryFirstPageScript;
+    private final String binaryNextPageScript;
+    private final String findByIdScript;
+    private final String findAllByIdsScript;
+
+    private EntityMetadata(Class<?> type, Constructor<?> constructor, MethodHandle constructorHandle,
+                           EntityMapper<Object> mapper, String tableName, List<ColumnMetadata> columns,
+                           String conflictPolicy) {
+        this.type = type;
+        this.constructor = constructor;
+        this.constructorHandle = constructorHandle;
+        this.mapper = mapper;
+        this.tableName = tableName;
+        this.columns = Collections.unmodifiableList(columns);
+        this.updateScripts = new ConcurrentHashMap<>();
+        this.primaryKeys = Collections.unmodifiableList(columns.stream()
+                .filter(ColumnMetadata::isPrimaryKey)
+                .collect(Collectors.toList()));
+        this.primaryKeyIndexes = primaryKeys.stream()
+                .mapToInt(columns::indexOf)
+                .toArray();
+        this.columnList = columns.stream()
+                .map(ColumnMetadata::getName)
+                .collect(Collectors.joining(","));
+
+        String primaryKeyList = primaryKeys.stream()
+                .map(ColumnMetadata::getName)
+                .collect(Collectors.joining(", "));
+        this.conflictTarget = conflictPolicy.isEmpty() ? primaryKeyList : conflictPolicy;
+
+        if (conflictTarget.isEmpty()) {
+            this.upsertClause = "";
+        } else {
+            String updateList = columns.stream()
+                    .map(column -> column.getName() + " = EXCLUDED." + column.getName())
+                    .collect(Collectors.joining(", "));
+            this.upsertClause = String.format(" ON CONFLICT (%s) DO UPDATE SET %s", conflictTarget, updateList);
+        }
+
+        if (tableName.isEmpty()) {
+            this.createScript = null;
+            this.selectScript = null;
+            this.deleteAllScript = null;
+            this.upsertScript = null;
+            this.upsertReturningScript = null;
+            this.keyColumns = null;
+            this.deleteScript = null;
+            this.firstPageScript = null;
+            this.nextPageScript = null;
+            this.binaryFirstPageScript = null;
+            this.binaryNextPageScript = null;
+            this.findByIdScript = null;
+            this.findAllByIdsScript = null;
+            return;
+        }
+
+        String fieldsDefinition = columns.stream()
+                .map(column -> column.getName() + " " + column.getDefinition())
+                .collect(Collectors.joining(","));
+        String primaryKeyConstraint = primaryKeys.isEmpty() ? ""
+                : ", CONSTRAINT " + type.getSimpleName() + "_pk PRIMARY KEY (" + primaryKeyList + ")";
+
+        this.createScript = String.format("CREATE TABLE IF NOT EXISTS %s (%s%s);", tableName, fieldsDefinition, primaryKeyConstraint);
+        this.selectScript = "SELECT * FROM " + tableName + ";";
+        this.deleteAllScript = "DELETE FROM " + tableName + ";";
+
+        String placeholders = columns.stream().map(ColumnMetadata::getPlaceholder).collect(Collectors.joining(","));
+        this.upsertScript = String.format("INSERT INTO %s (%s) VALUES (%s)%s;", tableName, columnList, placeholders, upsertClause);
+
+        if (primaryKeys.isEmpty()) {
+            this.upsertReturningScript = null;
+            this.keyColumns = null;
+            this.deleteScript = null;
+            this.firstPageScript = null;
+            this.nextPageScript = null;
+            this.binaryFirstPageScript = null;
+            this.binaryNextPageScript = null;
+            this.findByIdScript = null;
+            this.findAllByIdsScript = null;
+            return;
+        }
+
+        String keyColumns = primaryKeys.stream().map(ColumnMetadata::getName).collect(Collectors.joining(","));
+        String keyPlaceholders = primaryKeys.stream().map(ColumnMetadata::getPlaceholder).collect(Collectors.joining(","));
+
+        this.keyColumns = keyColumns;
+        this.upsertReturningScript = String.format("INSERT INTO %s (%s) VALUES (%s)%s RETURNING %s;",
+                tableName, columnList, placeholders, upsertClause, keyColumns);
+
+        this.deleteScript = String.format("DELETE FROM %s WHERE (%s) = (%s);", tableName, keyColumns, keyPlaceholders);
+        this.firstPageScript = String.format("SELECT * FROM %s ORDER BY %s LIMIT ?;", tableName, primaryKeyList);
+        this.nextPageScript = String.format("SELECT * FROM %s WHERE (%s) > (%s) ORDER BY %s LIMIT ?;",
+                tableName, keyColumns, keyPlaceholders, primaryKeyList);
+        this.findByIdScript = String.format("SELECT * FROM %s WHERE (%s) = (%s) LIMIT 1;", tableName, keyColumns, keyPlaceholders);
+
+        // The "C" collation orders text by code point, like the merge of pages of multiple shards
+        String binaryKeyColumns = primaryKeys.stream()
+                .map(column -> column.isCharacterType() ? column.getName() + " COLLATE \"C\"" : column.getName())
+                .collect(Collectors.joining(", "));
+        this.binaryFirstPageScript = String.format("SELECT * FROM %s ORDER BY %s LIMIT ?;", tableName, binaryKeyColumns);
+        this.binaryNextPageScript = String.format("SELECT * FROM %s WHERE (%s) > (%s) ORDER BY %s LIMIT ?;",
+                tableName, binaryKeyColumns, keyPlaceholders, binaryKeyColumns);
+
+        // Each key column is bound as one text array, cast to the column type so the primary key index is used
+        String keyArrays = primaryKeys.stream()
+                .map(column -> "CAST(? AS " + getBaseType(column.getSqlType()) + "[])")
+                .collect(Collectors.joining(", "));
+        this.findAllByIdsScript = primaryKeys.size() == 1
+                ? String.format("SELECT * FROM %s WHERE %s = ANY(%s);", tableName, keyColumns, keyArrays)
+                : String.format("SELECT * FROM %s WHERE (%s) IN (SELECT * FROM UNNEST(%s));", tableName, keyColumns, keyArrays);
+    }
+
+    /**
+     * Inspects the given class and builds its metadata.
+     *
+     * @param clazz       the entity class.
+     * @param databaseAPI the API used to resolve registered value processors.
+     * @return the metadata of the class.
+     */
+    static EntityMetadata create(Class<?> clazz, DatabaseAPI databaseAPI) {
+        return create(clazz, databaseAPI, findMapper(clazz, getTableName(clazz)));
+    }
+
+    /**
+     * Inspects the given class and builds its metadata, using the generated mapper for field access.
+     *
+     * @param clazz       the entity class.
+     * @param databaseAPI the API used to resolve registered value processors.
+     * @param mapper      the generated mapper of the class, may be null.
+     * @return the metadata of the class.
+     */
+    private static EntityMetadata create(Class<?> clazz, DatabaseAPI databaseAPI, EntityMapper<Object> mapper) {
+        Map<String, Integer> mapperColumns = new HashMap<>();
+        Set<String> runtimeColumns = new HashSet<>();
+        if (mapper != null) {
+            String[] columnNames = mapper.getColumnNames();
+            for (int i = 0; i < columnNames.length; i++) {
+                mapperColumns.put(columnNames[i], i);
+            }
+            runtimeColumns.addAll(Arrays.asList(mapper.getRuntimeColumnNames()));
+        }
+
+        List<ColumnMetadata> columns = new ArrayList<>();
+        for (Field field : getDeclaredFields(clazz)) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+
+            Column column = field.getAnnotation(Column.class);
+            if (column == null) {
+                continue;
+            }
+
+            field.setAccessible(true);
+            String dbName = getDbName(field, column);
+            Integer mapperColumn = mapperColumns.get(dbName);
+            if (mapper != null && mapperColumn == null && !runtimeColumns.contains(dbName)) {
+                // Generated mapper is out of date, do not trust any of its columns
+                return create(clazz, databaseAPI, null);
+            }
+            FieldAccessor accessor = mapperColumn == null
+                    ? FieldAccessor.of(field)
+                    : new MapperFieldAccessor(mapper, mapperColumn);
+
+            DatabaseValueProcessor processor = databaseAPI.getProcessor(field.getType());
+            String sqlType = getSqlType(field, column, processor);
+            columns.add(new ColumnMetadata(
+                    field,
+                    accessor,
+                    dbName,
+                    sqlType,
+                    getColumnDefinition(field, sqlType),
+                    processor,
+                    field.isAnnotationPresent(PrimaryKey.class),
+                    field.isAnnotationPresent(NullableColumn.class)));
+        }
+
+        Constructor<?> constructor = null;
+        MethodHandle constructorHandle = null;
+        try {
+            constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            constructorHandle = MethodHandles.privateLookupIn(clazz, MethodHandles.lookup())
+                    .unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException ignored) {
+            // Entity can still be used for writes, creating new instances will fail
+        } catch (IllegalAccessException | RuntimeException ignored) {
+            // Fall back to the reflective constructor
+        }
+
+        DatabaseEntity databaseEntity = clazz.getAnnotation(DatabaseEntity.class);
+        String conflictPolicy = databaseEntity == null ? "" : databaseEntity.conflictPolicy();
+
+        return new EntityMetadata(clazz, constructor, constructorHandle, mapper, getTableName(clazz), columns, conflictPolicy);
+    }
+
+    /**
+     * Loads the generated {@link EntityMapper} of the class, if there is one matching the class.
+     *
+     * @param clazz     the entity class.
+     * @param tableName the quoted table name resolved for the class.
+     * @return the mapper, or null if no usable mapper was generated.
+     */
+    @SuppressWarnings("unchecked")
+    private static EntityMapper<Object> findMapper(Class<?> clazz, String tableName) {
+        try {
+            Class<?> mapperClass = Class.forName(EntityMapper.getMapperClassName(clazz), true, clazz.getClassLoader());
+            if (!EntityMapper.class.isAssignableFrom(mapperClass)) {
+                return null;
+            }
+
+            EntityMapper<Object> mapper = (EntityMapper<Object>) mapperClass.getDeclaredConstructor().newInstance();
+            if (!tableName.equals("\"" + mapper.getTableName() + "\"")) {
+                return null;
+            }
+            return mapper;
+        } catch (ClassNotFoundException | LinkageError ignored) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Creates a new instance of the entity using its no-argument constructor.
+     *
+     * @return a new instance of the entity.
+     * @throws ReflectiveOperationException if the entity cannot be instantiated.
+     */
+    public Object newInstance() throws ReflectiveOperationException {
+        if (mapper != null) {
+            return mapper.newInstance();
+        }
+        if (constructorHandle != null) {
+            try {
+                return (Object) constructorHandle.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new InvocationTargetException(throwable);
+            }
+        }
+        if (constructor == null) {
+            throw new NoSuchMethodException(type.getName() + ".<init>()");
+        }
+        return constructor.newInstance();
+    }
+
+    /**
+     * @return the entity class.
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return the quoted table name, or an empty string if the name could not be resolved.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return all columns of the entity, superclass columns first.
+     */
+    public List<ColumnMetadata> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the columns which form the primary key.
+     */
+    public List<ColumnMetadata> getPrimaryKeys() {
+        return primaryKeys;
+    }
+
+    /**
+     * @return positions of the primary key columns within {@link #getColumns()}.
+     */
+    public int[] getPrimaryKeyIndexes() {
+        return primaryKeyIndexes.clone();
+    }
+
+    /**
+     * @return comma-separated list of all column names.
+     */
+    public String getColumnList() {
+        return columnList;
+    }
+
+    /**
+     * @return the columns used in the ON CONFLICT clause of upserts.
+     */
+    public String getConflictTarget() {
+        return conflictTarget;
+    }
+
+    /**
+     * @return the CREATE TABLE script, or null if the table name is empty.
+     */
+    public String getCreateScript() {
+        return createScript;
+    }
+
+    /**
+     * @return the SELECT script returning all rows, or null if the table name is empty.
+     */
+    public String getSelectScript() {
+        return selectScript;
+    }
+
+    /**
+     * @return the DELETE script removing all rows, or null if the table name is empty.
+     */
+    public String getDeleteAllScript() {
+        return deleteAllScript;
+    }
+
+    /**
+     * @return the ON CONFLICT clause appended to inserts (with a leading space), or an empty string
+     * if the entity has no conflict target.
+     */
+    public String getUpsertClause() {
+        return upsertClause;
+    }
+
+    /**
+     * @return the parameterized upsert script binding all columns in order, or null if the table name is empty.
+     */
+    public String getUpsertScript() {
+        return upsertScript;
+    }
+
+    /**
+     * @return the upsert script of {@link #getUpsertScript()} returning the primary key of the written row,
+     * or null if the table name is empty or the entity has no primary key.
+     */
+    public String getUpsertReturningScript() {
+        return upsertReturningScript;
+    }
+
+    /**
+     * Builds the script updating only the given columns of a row identified by its primary key.
+     * The script binds the values of the changed columns in order, followed by the primary key columns,
+     * and returns the primary key of the updated row. Scripts are cached per set of columns.
+     *
+     * @param changedColumns the indexes of the updated columns in {@link #getColumns()}.
+     * @return the UPDATE script, or null if the table name is empty or the entity has no primary key.
+     */
+    public String getUpdateScript(BitSet changedColumns) {
+        if (keyColumns == null) {
+            return null;
+        }
+
+        String script = updateScripts.get(changedColumns);
+        if (script != null) {
+            return script;
+        }
+
+        String setList = changedColumns.stream()
+                .mapToObj(index -> columns.get(index).getName() + " = " + columns.get(index).getPlaceholder())
+                .collect(Collectors.joining(", "));
+        String keyPlaceholders = primaryKeys.stream().map(ColumnMetadata::getPlaceholder).collect(Collectors.joining(","));
+        script = String.format("UPDATE %s SET %s WHERE (%s) = (%s) RETURNING %s;",
+                tableName, setList, keyColumns, keyPlaceholders, keyColumns);
+        updateScripts.put((BitSet) changedColumns.clone(), script);
+        return script;
+    }
+
+    /**
+     * @return the parameterized DELETE script binding the primary key columns in order,
+     * or null if the table name is empty or the entity has no primary key.
+     */
+    public String getDeleteScript() {
+        return deleteScript;
+    }
+
+    /**
+     * @return the script selecting the first page of rows ordered by primary key, binding the limit,
+     * or null if the table name is empty or the entity has no primary key.
+     */
+    public String getFirstPageScript() {
+        return firstPageScript;
+    }
+
+    /**
+     * @return the script selecting the rows following a primary key, binding the key columns in order
+     * followed by the limit, or null if the table name is empty or the entity has no primary key.
+     */
+    public String getNextPageScript() {
+        return nextPageScript;
+    }
+
+    /**
+     * Like {@link #getFirstPageScript()}, but orders character key columns by code point instead of
+     * the collation of the database. The order does not use the primary key index for such columns.
+     *
+     * @return the script selecting the first page of rows, or null if the table name is empty or the entity
+     * has no primary key.
+     */
+    public String getBinaryFirstPageScript() {
+        return binaryFirstPageScript;
+    }
+
+    /**
+     * Like {@link #getNextPageScript()}, but orders character key columns by code point instead of
+     * the collation of the database.
+     *
+     * @return the script selecting the rows following a primary key, or null if the table name is empty
+     * or the entity has no primary key.
+     */
+    public String getBinaryNextPageScript() {
+        return binaryNextPageScript;
+    }
+
+    /**
+     * @return the script selecting a single row by primary key, binding the key columns in order,
+     * or null if the table name is empty or the entity has no primary key.
+     */
+    public String getFindByIdScript() {
+        return findByIdScript;
+    }
+
+    /**
+     * @return the script selecting rows by multiple primary keys, binding one text array per key column,
+     * or null if the table name is empty or the entity has no primary key.
+     */
+    public String getFindAllByIdsScript() {
+        return findAllByIdsScript;
+    }
+
+    /**
+     * Resolves the type a value of a column is cast to. Serial types are not real types and are replaced by
+     * their underlying integer types.
+     *
+     * @param sqlType the SQL type of the column.
+     * @return the SQL type.
+     */
+    static String getBaseType(String sqlType) {
+        return switch (sqlType.toUpperCase()) {
+            case "SMALLSERIAL", "SERIAL2" -> "SMALLINT";
+            case "SERIAL", "SERIAL4" -> "INTEGER";
+            case "BIGSERIAL", "SERIAL8" -> "BIGINT";
+            default -> sqlType;
+        };
+    }
+
+    /**
+     * Determines the SQL type of a field based on its annotations and type, without any constraints.
+     *
+     * @param field          the field whose SQL type is needed.
+     * @param column         the Column annotation of the field.
+     * @param valueProcessor the custom value processor of the field type, may be null.
+     * @return a string representing the SQL type of the field.
+     */
+    private static String getSqlType(Field field, Column column, DatabaseValueProcessor valueProcessor) {
+        StringBuilder sqlTypeBuilder = new StringBuilder();
+
+        if (valueProcessor != null) {
+            sqlTypeBuilder.append(valueProcessor.getType());
+        } else if (!column.type().isEmpty()) {
+            // Use type specified in the Column annotation
+            sqlTypeBuilder.append(column.type());
+        } else {
+            // Default handling for various Java types
+            Class<?> fieldType = field.getType();
+
+            if (fieldType == String.class) {
+                if (field.isAnnotationPresent(Text.class)) {
+                    Text textAnnotation = field.getAnnotation(Text.class);
+                    if (textAnnotation.customLength() > 10485760 || textAnnotation.customLength() < 0) {
+                        sqlTypeBuilder.append("TEXT");
+                    } else {
+                        sqlTypeBuilder.append(String.format("VARCHAR(%d)", textAnnotation.customLength()));
+                    }
+                } else {
+                    sqlTypeBuilder.append("VARCHAR(30)");
+                }
+            } else if (fieldType == int.class) {
+                sqlTypeBuilder.append("INTEGER");
+            } else if (fieldType == long.class) {
+                sqlTypeBuilder.append("BIGINT");
+            } else if (fieldType == double.class) {
+                sqlTypeBuilder.append("DOUBLE PRECISION");
+            } else if (fieldType == boolean.class) {
+                sqlTypeBuilder.append("BOOLEAN");
+            } else if (fieldType == UUID.class) {
+                sqlTypeBuilder.append("VARCHAR(36)");
+            } else if (fieldType == Timestamp.class) {
+                sqlTypeBuilder.append("TIMESTAMP");
+            } else if (fieldType.isEnum()) {
+                sqlTypeBuilder.append("TEXT");
+            } else if (fieldType == List.class) {
+                sqlTypeBuilder.append("TEXT");
+            } else if (field.isAnnotationPresent(AutoIncrement.class)) {
+                sqlTypeBuilder.append("SERIAL");
+            } else {
+                sqlTypeBuilder.append("TEXT");
+            }
+        }
+
+        return sqlTypeBuilder.toString();
+    }
+
+    /**
+     * Builds the column definition of a field, i.e. its SQL type followed by constraints.
+     *
+     * @param field   the field whose definition is needed.
+     * @param sqlType the SQL type of the field.
+     * @return a string representing the SQL column definition.
+     */
+    private static String getColumnDefinition(Field field, String sqlType) {
+        StringBuilder sqlTypeBuilder = new StringBuilder(sqlType);
+
+        // Append NOT NULL constraint
+        if (field.isAnnotationPresent(PrimaryKey.class) || !field.isAnnotationPresent(NullableColumn.class)) {
+            sqlTypeBuilder.append(" NOT NULL");
+        }
+
+        // Append UNIQUE constraint
+        if (field.isAnnotationPresent(Unique.class)) {
+            sqlTypeBuilder.append(" UNIQUE");
+        }
+
+        return sqlTypeBuilder.toString();
+    }
+
+    /**
+     * Retrieves the table name for a given class, based on its annotations.
+     *
+     * @param clazz the class whose table name is required.
+     * @return the table name in snake case.
+     */
+    private static String getTableName(Class<?> clazz) {
+        String tableName = null;
+
+        if (clazz.isAnnotationPresent(DatabaseEntity.class)) {
+            DatabaseEntity databaseEntity = clazz.getAnnotation(DatabaseEntity.class);
+            tableName = databaseEntity.table();
+        }
+
+        if (tableName == null || tableName.isEmpty()) {
+            tableName = camelCaseToSnakeCase(clazz.getSimpleName());
+        }
+
+        if (tableName.isEmpty()) {
+            return tableName;
+        }
+
+        return "\"" + tableName + "\"";
+    }
+
+    /**
+     * Retrieves the database column name for a given field, based on its annotations.
+     *
+     * @param field  the field whose database column name is required.
+     * @param column the Column annotation of the field.
+     * @return the database column name in snake case.
+     */
+    private static String getDbName(Field field, Column column) {
+        return column.key().isEmpty() ? camelCaseToSnakeCase(field.getName()) : column.key();
+    }
+
+    /**
+     * Converts a camelCase string to a snake_case string.
+     *
+     * @param input the camelCase string to be converted.
+     * @return the snake_case version of the string.
+     */
+    private static String camelCaseToSnakeCase(String input) {
+        return input.replaceAll("([a-z])([A-Z]+)", "$1_$2").toLowerCase();
+    }
+
+    /**
+     * Retrieves all declared fields of a class, including inherited fields.
+     *
+     * @param clazz the class whose fields are required.
+     * @return a list of all declared fields of the class.
+     */
+    private static List<Field> getDeclaredFields(Class<?> clazz) {
+        List<Field> fieldList = new ArrayList<>();
+
+        if (clazz.getSuperclass() != null && clazz != Object.class) {
+            fieldList.addAll(getDeclaredFields(clazz.getSuperclass()));
+        }
+        fieldList.addAll(Arrays.asList(clazz.getDeclaredFields()));
+
+        return fieldList;
+    }
+
+}
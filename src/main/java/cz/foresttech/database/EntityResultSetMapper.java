@@ -0,0 +1,83 @@
+package cz.foresttech.database;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Populates entities straight from a {@link ResultSet}.
+ * The result set columns are matched to entity columns once, when the mapper is prepared.
+ *
+ * @param <T> the entity type.
+ */
+class EntityResultSetMapper<T> implements ResultSetMapper<T> {
+
+    private final Class<T> clazz;
+    private final EntityMetadata metadata;
+    private ColumnMetadata[] columns;
+    private int[] indexes;
+
+    EntityResultSetMapper(Class<T> clazz, EntityMetadata metadata) {
+        this.clazz = clazz;
+        this.metadata = metadata;
+    }
+
+    @Override
+    public void prepare(ResultSetMetaData metaData) throws SQLException {
+        Map<String, Integer> resultColumns = new HashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            resultColumns.put(metaData.getColumnName(i), i);
+        }
+
+        List<ColumnMetadata> plannedColumns = new ArrayList<>();
+        List<Integer> plannedIndexes = new ArrayList<>();
+        for (ColumnMetadata column : metadata.getColumns()) {
+            Integer index = resultColumns.get(column.getName());
+            if (index == null) {
+                continue;
+            }
+            plannedColumns.add(column);
+            plannedIndexes.add(index);
+        }
+
+        this.columns = plannedColumns.toArray(new ColumnMetadata[0]);
+        this.indexes = plannedIndexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public T map(ResultSet result) throws SQLException {
+        if (columns == null) {
+            prepare(result.getMetaData());
+        }
+
+        EntityConversionEvent event = new EntityConversionEvent();
+        event.begin();
+        T instance;
+        try {
+            instance = clazz.cast(metadata.newInstance());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            try {
+                columns[i].getReader().read(columns[i], result, indexes[i], instance);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (event.shouldCommit()) {
+            event.entity = clazz;
+            event.columns = columns.length;
+            event.commit();
+        }
+        return instance;
+    }
+
+}
@@ -0,0 +1,65 @@
+package cz.foresttech.database;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads and writes a single entity field.
+ * Primitive variants avoid boxing when the caller already knows the field type.
+ */
+public interface FieldAccessor {
+
+    Object get(Object instance);
+
+    void set(Object instance, Object value);
+
+    default int getInt(Object instance) {
+        return (Integer) get(instance);
+    }
+
+    default void setInt(Object instance, int value) {
+        set(instance, value);
+    }
+
+    default long getLong(Object instance) {
+        return (Long) get(instance);
+    }
+
+    default void setLong(Object instance, long value) {
+        set(instance, value);
+    }
+
+    default double getDouble(Object instance) {
+        return (Double) get(instance);
+    }
+
+    default void setDouble(Object instance, double value) {
+        set(instance, value);
+    }
+
+    default boolean getBoolean(Object instance) {
+        return (Boolean) get(instance);
+    }
+
+    default void setBoolean(Object instance, boolean value) {
+        set(instance, value);
+    }
+
+    /**
+     * Creates an accessor for the given field.
+     * Method handles are used whenever the field can be unreflected, plain reflection is used otherwise
+     * (e.g. for final fields, when the declaring module does not allow private access or when the hidden class
+     * holding the handles cannot be defined).
+     *
+     * @param field the field to be accessed.
+     * @return accessor of the field.
+     */
+    static FieldAccessor of(Field field) {
+        try {
+            return MethodHandleFieldAccessor.create(field);
+        } catch (IllegalAccessException | RuntimeException e) {
+            field.setAccessible(true);
+            return new ReflectionFieldAccessor(field);
+        }
+    }
+
+}
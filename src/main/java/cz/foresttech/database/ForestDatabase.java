@@ -1,7 +1,13 @@
 package cz.foresttech.database;
 
+import cz.foresttech.database.metrics.DatabaseMetrics;
+
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Interface used for uniting database logic.
@@ -12,4 +18,119 @@ public interface ForestDatabase {
     Connection getConnection() throws Exception;
     void close();
     ArrayList<DBRow> query(final String query, final Object... variables);
+
+    /**
+     * Executes a query and maps its rows directly from the result set, without creating intermediate rows.
+     * The default implementation maps the rows returned by {@link #query(String, Object...)}.
+     *
+     * @param query     the query to be executed.
+     * @param mapper    the mapper of the result set rows, rows mapped to null are skipped.
+     * @param variables the query parameters.
+     * @return the mapped rows, empty if the query failed.
+     */
+    default <T> List<T> query(final String query, final ResultSetMapper<T> mapper, final Object... variables) {
+        try {
+            return queryChecked(query, mapper, variables);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Executes a query like {@link #query(String, ResultSetMapper, Object...)}, but reports its failure instead
+     * of returning no rows, so a failed query can be told apart from a query without rows.
+     * The default implementation maps the rows returned by {@link #query(String, Object...)}, which does not report
+     * failures, so only failures of the mapper are thrown. Implementations should override it to report failed queries.
+     *
+     * @param query     the query to be executed.
+     * @param mapper    the mapper of the result set rows, rows mapped to null are skipped.
+     * @param variables the query parameters.
+     * @return the mapped rows.
+     * @throws SQLException if the query failed.
+     */
+    default <T> List<T> queryChecked(final String query, final ResultSetMapper<T> mapper, final Object... variables) throws SQLException {
+        final List<T> rows = new ArrayList<>();
+        try (ResultSet result = DBRowResultSet.of(query(query, variables))) {
+            mapper.prepare(result.getMetaData());
+            while (result.next()) {
+                final T row = mapper.map(result);
+                if (row != null) {
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Executes a statement for every set of parameters using JDBC batching on a single connection.
+     * All rows are written in one transaction, which is rolled back if any of them fails.
+     * The default implementation executes the statement once per set of parameters using
+     * {@link #queryChecked(String, ResultSetMapper, Object...)}, without a transaction, and stops at the first
+     * reported failure.
+     *
+     * @param query      the statement to be executed.
+     * @param parameters the parameters of each execution.
+     * @param batchSize  the maximum number of rows sent to the server at once.
+     * @return true if all rows were written.
+     */
+    default boolean batch(final String query, final List<Object[]> parameters, final int batchSize) {
+        for (Object[] variables : parameters) {
+            try {
+                queryChecked(query, result -> null, variables);
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Executes a query and streams its rows using a server-side cursor, so only {@code fetchSize} rows are held
+     * in memory at once. The returned stream holds a connection and must be closed.
+     * The default implementation loads all rows at once and streams them from memory.
+     *
+     * @param query     the query to be executed.
+     * @param fetchSize the number of rows fetched from the server at once.
+     * @param variables the query parameters.
+     * @return a stream of rows, empty if the query failed.
+     */
+    default Stream<DBRow> stream(final String query, final int fetchSize, final Object... variables) {
+        return query(query, variables).stream();
+    }
+
+    /**
+     * Executes a query and streams its rows mapped directly from the result set.
+     * The default implementation loads all rows at once and streams them from memory.
+     *
+     * @param query     the query to be executed.
+     * @param fetchSize the number of rows fetched from the server at once.
+     * @param mapper    the mapper of the result set rows, rows mapped to null are skipped.
+     * @param variables the query parameters.
+     * @return a stream of mapped rows, empty if the query failed.
+     * @see #stream(String, int, Object...)
+     */
+    default <T> Stream<T> stream(final String query, final int fetchSize, final ResultSetMapper<T> mapper, final Object... variables) {
+        return query(query, mapper, variables).stream();
+    }
+
+    /**
+     * Attaches a watchdog of calls made on the server thread. Implementations which do not support it ignore the watchdog.
+     *
+     * @param watchdog the watchdog, or null to detach the current one.
+     */
+    default void setMainThreadWatchdog(MainThreadWatchdog watchdog) {
+    }
+
+    /**
+     * Attaches the recorder of statement and connection pool metrics. Implementations which do not support it
+     * ignore the recorder.
+     *
+     * @param metrics the recorder bound to this database, or null to stop recording.
+     */
+    default void setDatabaseMetrics(DatabaseMetrics metrics) {
+    }
+
 }
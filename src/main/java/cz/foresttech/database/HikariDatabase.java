@@ -2,12 +2,21 @@ package cz.foresttech.database;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import cz.foresttech.database.metrics.DatabaseMetrics;
+import cz.foresttech.database.metrics.MetricKey;
+import cz.foresttech.database.metrics.PoolStatsSnapshot;
 
-import java.io.InputStream;
-import java.io.PrintWriter;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class HikariDatabase implements ForestDatabase {
 
@@ -16,9 +25,25 @@ public class HikariDatabase implements ForestDatabase {
     private final String username;
     private final String password;
     private final String databaseName;
+    private final HikariDatabaseConfig config;
     private HikariDataSource hikariDataSource;
+    private volatile MainThreadWatchdog mainThreadWatchdog;
+    private volatile DatabaseMetrics databaseMetrics;
+    private volatile SlowQueryLog slowQueryLog;
+    private final ThreadLocal<Connection> transactionConnection = new ThreadLocal<>();
 
     public HikariDatabase(String host, String databaseName, String username, String password) {
+        this(host, databaseName, username, password, HikariDatabaseConfig.defaults());
+    }
+
+    /**
+     * @param host         the host of the server, optionally with a port separated by a colon.
+     * @param databaseName the name of the database.
+     * @param username     the username.
+     * @param password     the password.
+     * @param config       the connection pool and driver settings.
+     */
+    public HikariDatabase(String host, String databaseName, String username, String password, HikariDatabaseConfig config) {
         String[] splitHost = host.split(":");
         if (splitHost.length > 1) {
             this.host = splitHost[0];
@@ -31,6 +56,7 @@ public class HikariDatabase implements ForestDatabase {
         this.databaseName = databaseName;
         this.username = username;
         this.password = password;
+        this.config = config == null ? HikariDatabaseConfig.defaults() : config;
     }
 
     @Override
@@ -39,15 +65,33 @@ public class HikariDatabase implements ForestDatabase {
         props.setProperty("dataSource.user", this.username);
         props.setProperty("dataSource.password", this.password);
         props.setProperty("dataSource.databaseName", this.databaseName);
-        props.put("dataSource.logWriter", new PrintWriter(System.out));
         props.setProperty("dataSource.serverName", host);
         props.setProperty("dataSource.portNumber", port);
 
-        HikariConfig config = new HikariConfig(props);
-        config.setJdbcUrl("jdbc:postgresql://" + host + ":" + port +  "/" + databaseName + "?user=" + username + "&password=" + password);
-        config.setDriverClassName(org.postgresql.Driver.class.getName());
+        HikariConfig hikariConfig = new HikariConfig(props);
+        config.apply(hikariConfig);
+        hikariConfig.setJdbcUrl("jdbc:postgresql://" + host + ":" + port +  "/" + databaseName + "?user=" + username + "&password=" + password);
+        hikariConfig.setDriverClassName(org.postgresql.Driver.class.getName());
+        // The tracker forwards to the metrics attached at the time of the event, they may be attached after setup
+        hikariConfig.setMetricsTrackerFactory((poolName, poolStats) -> new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                DatabaseMetrics metrics = databaseMetrics;
+                if (metrics != null) {
+                    metrics.recordConnectionAcquired(elapsedAcquiredNanos);
+                }
+            }
 
-        hikariDataSource = new HikariDataSource(config);
+            @Override
+            public void recordConnectionTimeout() {
+                DatabaseMetrics metrics = databaseMetrics;
+                if (metrics != null) {
+                    metrics.recordConnectionTimeout();
+                }
+            }
+        });
+
+        hikariDataSource = new HikariDataSource(hikariConfig);
     }
 
     @Override
@@ -65,65 +109,479 @@ public class HikariDatabase implements ForestDatabase {
         }
     }
 
+    /**
+     * @return the connection pool and driver settings.
+     */
+    public HikariDatabaseConfig getConfig() {
+        return config;
+    }
+
+    @Override
+    public void setMainThreadWatchdog(MainThreadWatchdog watchdog) {
+        this.mainThreadWatchdog = watchdog;
+    }
+
+    @Override
+    public void setDatabaseMetrics(DatabaseMetrics metrics) {
+        this.databaseMetrics = metrics;
+    }
+
+    /**
+     * Sets the log of statements exceeding a duration threshold.
+     *
+     * @param slowQueryLog the slow query log, or null to disable it.
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * @return the log of statements exceeding a duration threshold, or null if it is disabled.
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * Retrieves the current state of the connection pool.
+     *
+     * @return the pool state, or null if the pool has not been started yet.
+     */
+    public PoolStatsSnapshot getPoolStats() {
+        HikariDataSource dataSource = hikariDataSource;
+        HikariPoolMXBean pool = dataSource == null ? null : dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return null;
+        }
+        return new PoolStatsSnapshot(pool.getActiveConnections(), pool.getIdleConnections(),
+                pool.getTotalConnections(), pool.getThreadsAwaitingConnection());
+    }
+
     @Override
     public final ArrayList<DBRow> query(final String query, final Object... variables) {
-        final ArrayList<DBRow> rows = new ArrayList<>();
+        return execute(query, new DBRowMapper(), variables);
+    }
+
+    @Override
+    public final <T> List<T> query(final String query, final ResultSetMapper<T> mapper, final Object... variables) {
+        return execute(query, mapper, variables);
+    }
+
+    @Override
+    public final <T> List<T> queryChecked(final String query, final ResultSetMapper<T> mapper, final Object... variables) throws SQLException {
+        return executeChecked(query, mapper, variables);
+    }
+
+    private <T> ArrayList<T> execute(final String query, final ResultSetMapper<T> mapper, final Object... variables) {
+        try {
+            return executeChecked(query, mapper, variables);
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    private <T> ArrayList<T> executeChecked(final String query, final ResultSetMapper<T> mapper, final Object... variables) throws SQLException {
+        final ArrayList<T> rows = new ArrayList<>();
+        final MainThreadWatchdog watchdog = mainThreadWatchdog;
+        final long watchStart = watchdog == null ? -1 : watchdog.begin(query);
+        final DatabaseMetrics metrics = databaseMetrics;
+        final MetricKey metricKey = metrics == null ? null : metrics.resolve();
+        final long start = System.nanoTime();
+        boolean failed = false;
 
         ResultSet result = null;
         PreparedStatement pState = null;
         Connection connection = null;
 
+        final StatementExecuteEvent executeEvent = new StatementExecuteEvent();
+        final RowMappingEvent mappingEvent = new RowMappingEvent();
+
+        final Connection pinned = transactionConnection.get();
         try {
-            connection = this.getConnection();
+            connection = pinned != null ? pinned : acquireConnection(metricKey);
             pState = connection.prepareStatement(query);
-            for (int i = 1; i <= variables.length; ++i) {
-                Object obj = variables[i - 1];
-                if (obj != null && obj.toString().equalsIgnoreCase("null")) {
-                    obj = null;
-                }
-                if (obj instanceof Blob) {
-                    pState.setBlob(i, (Blob) obj);
-                } else if (obj instanceof InputStream) {
-                    pState.setBinaryStream(i, (InputStream) obj);
-                } else if (obj instanceof byte[]) {
-                    pState.setBytes(i, (byte[]) obj);
-                } else if (obj instanceof Boolean) {
-                    pState.setBoolean(i, (boolean) obj);
-                } else if (obj instanceof Integer) {
-                    pState.setInt(i, (int) obj);
-                } else if (obj instanceof String) {
-                    pState.setString(i, (String) obj);
-                } else {
-                    pState.setObject(i, obj);
-                }
-            }
+            StatementParameters.bind(pState, variables);
+            executeEvent.begin();
             if (pState.execute()) {
                 result = pState.getResultSet();
             }
+            executeEvent.end();
             if (result != null) {
-                final ResultSetMetaData mtd = result.getMetaData();
-                final int columnCount = mtd.getColumnCount();
+                mappingEvent.begin();
+                mapper.prepare(result.getMetaData());
                 while (result.next()) {
-                    final DBRow row = new DBRow();
-                    for (int l = 0; l < columnCount; ++l) {
-                        final String columnName = mtd.getColumnName(l + 1);
-                        row.addCell(columnName, result.getObject(columnName));
+                    final T row = mapper.map(result);
+                    if (row != null) {
+                        rows.add(row);
                     }
-                    rows.add(row);
                 }
+                mappingEvent.end();
             }
         } catch (Exception exception) {
-            exception.printStackTrace();
+            failed = true;
+            if (pinned != null) {
+                throw new TransactionException("Statement failed in a transaction: " + query, exception);
+            }
+            throw exception instanceof SQLException sqlException ? sqlException : new SQLException(exception);
         } finally {
+            commitExecuteEvent(executeEvent, metricKey, query, 0, failed);
+            if (result != null && mappingEvent.shouldCommit()) {
+                mappingEvent.database = getDatabaseId(metricKey);
+                mappingEvent.entity = metricKey == null ? null : metricKey.entity();
+                mappingEvent.fingerprint = SqlFingerprint.of(query);
+                mappingEvent.rows = rows.size();
+                mappingEvent.commit();
+            }
             try {
-                connection.close();
+                if (pinned == null) {
+                    connection.close();
+                }
                 pState.close();
                 result.close();
             } catch (Exception ignored) {
             }
+            if (watchdog != null) {
+                watchdog.end(watchStart, query);
+            }
+            final long duration = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.record(metricKey, duration, rows.size(), failed);
+            }
+            final SlowQueryLog slowLog = slowQueryLog;
+            if (slowLog != null) {
+                slowLog.record(this, query, variables, duration, rows.size(), failed, true);
+            }
         }
 
         return rows;
     }
 
+    @Override
+    public boolean batch(final String query, final List<Object[]> parameters, final int batchSize) {
+        final MainThreadWatchdog watchdog = mainThreadWatchdog;
+        final long watchStart = watchdog == null ? -1 : watchdog.begin(query);
+        final DatabaseMetrics metrics = databaseMetrics;
+        final MetricKey metricKey = metrics == null ? null : metrics.resolve();
+        final long start = System.nanoTime();
+        boolean committed = false;
+        Connection connection = null;
+        PreparedStatement pState = null;
+
+        final StatementExecuteEvent executeEvent = new StatementExecuteEvent();
+        // Rows written in a transaction are committed by the transaction
+        final Connection pinned = transactionConnection.get();
+
+        try {
+            connection = pinned != null ? pinned : acquireConnection(metricKey);
+            if (pinned == null) {
+                connection.setAutoCommit(false);
+            }
+            pState = connection.prepareStatement(query);
+
+            executeEvent.begin();
+            int pending = 0;
+            for (Object[] variables : parameters) {
+                StatementParameters.bind(pState, variables);
+                pState.addBatch();
+                if (++pending >= batchSize) {
+                    pState.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                pState.executeBatch();
+            }
+
+            if (pinned == null) {
+                connection.commit();
+            }
+            committed = true;
+            return true;
+        } catch (Exception exception) {
+            if (pinned != null) {
+                throw new TransactionException("Batch failed in a transaction: " + query, exception);
+            }
+            exception.printStackTrace();
+            try {
+                if (connection != null) {
+                    connection.rollback();
+                }
+            } catch (Exception ignored) {
+            }
+            return false;
+        } finally {
+            try {
+                pState.close();
+            } catch (Exception ignored) {
+            }
+            try {
+                if (pinned == null) {
+                    connection.setAutoCommit(true);
+                    connection.close();
+                }
+            } catch (Exception ignored) {
+            }
+            commitExecuteEvent(executeEvent, metricKey, query, committed ? parameters.size() : 0, !committed);
+            if (watchdog != null) {
+                watchdog.end(watchStart, query);
+            }
+            final long duration = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.record(metricKey, duration, committed ? parameters.size() : 0, !committed);
+            }
+            // Batches are not explained, the parameter shape is the shape of the first row
+            final SlowQueryLog slowLog = slowQueryLog;
+            if (slowLog != null) {
+                slowLog.record(this, query, parameters.isEmpty() ? new Object[0] : parameters.get(0), duration,
+                        committed ? parameters.size() : 0, !committed, false);
+            }
+        }
+    }
+
+    @Override
+    public Stream<DBRow> stream(final String query, final int fetchSize, final Object... variables) {
+        return stream(query, fetchSize, new DBRowMapper(), variables);
+    }
+
+    @Override
+    public <T> Stream<T> stream(final String query, final int fetchSize, final ResultSetMapper<T> mapper, final Object... variables) {
+        // Only opening the cursor is watched, fetching further rows happens while the stream is consumed
+        final MainThreadWatchdog watchdog = mainThreadWatchdog;
+        final long watchStart = watchdog == null ? -1 : watchdog.begin(query);
+        // The whole lifetime of the stream is recorded as a single statement when the stream is closed
+        final DatabaseMetrics metrics = databaseMetrics;
+        final MetricKey metricKey = metrics == null ? null : metrics.resolve();
+        final long start = System.nanoTime();
+        Connection connection = null;
+        PreparedStatement pState = null;
+        ResultSet result = null;
+
+        final StatementExecuteEvent executeEvent = new StatementExecuteEvent();
+
+        // A cursor opened in a transaction lives in the transaction, which keeps its connection
+        final Connection pinned = transactionConnection.get();
+        try {
+            connection = pinned != null ? pinned : acquireConnection(metricKey);
+            // pgjdbc only uses a server-side cursor (and honours the fetch size) outside of autocommit mode
+            if (pinned == null) {
+                connection.setAutoCommit(false);
+            }
+            pState = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pState.setFetchSize(fetchSize);
+            StatementParameters.bind(pState, variables);
+            executeEvent.begin();
+            result = pState.executeQuery();
+            executeEvent.end();
+            commitExecuteEvent(executeEvent, metricKey, query, 0, false);
+            mapper.prepare(result.getMetaData());
+        } catch (Exception exception) {
+            if (result == null) {
+                commitExecuteEvent(executeEvent, metricKey, query, 0, true);
+            }
+            closeCursor(pinned == null ? connection : null, pState, result);
+            if (metrics != null) {
+                metrics.record(metricKey, System.nanoTime() - start, 0, true);
+            }
+            if (pinned != null) {
+                throw new TransactionException("Query failed in a transaction: " + query, exception);
+            }
+            exception.printStackTrace();
+            return Stream.empty();
+        } finally {
+            if (watchdog != null) {
+                watchdog.end(watchStart, query);
+            }
+        }
+
+        final Connection cursorConnection = pinned == null ? connection : null;
+        final PreparedStatement cursorStatement = pState;
+        final ResultSet cursor = result;
+        final long[] streamedRows = new long[1];
+        final boolean[] streamFailed = new boolean[1];
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    while (cursor.next()) {
+                        final T row = mapper.map(cursor);
+                        if (row != null) {
+                            streamedRows[0]++;
+                            action.accept(row);
+                            return true;
+                        }
+                    }
+                    return false;
+                } catch (SQLException e) {
+                    streamFailed[0] = true;
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> {
+                    closeCursor(cursorConnection, cursorStatement, cursor);
+                    if (metrics != null) {
+                        metrics.record(metricKey, System.nanoTime() - start, streamedRows[0], streamFailed[0]);
+                    }
+                });
+    }
+
+    /**
+     * Starts a transaction and binds its connection to the current thread, so all statements executed by the thread
+     * are part of it until {@link #endTransaction(boolean)} is called.
+     *
+     * @param isolation the JDBC isolation level.
+     * @param readOnly  if true, the transaction cannot write.
+     * @throws SQLException          if the connection could not be prepared.
+     * @throws IllegalStateException if the thread is already in a transaction of this database.
+     */
+    void beginTransaction(int isolation, boolean readOnly) throws SQLException {
+        if (transactionConnection.get() != null) {
+            throw new IllegalStateException("A transaction of this database is already in progress on the current thread");
+        }
+
+        Connection connection = getConnection();
+        try {
+            // The pool restores the previous settings once the connection is returned
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(isolation);
+            connection.setReadOnly(readOnly);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        transactionConnection.set(connection);
+    }
+
+    /**
+     * Commits or rolls back the transaction of the current thread and returns its connection to the pool.
+     *
+     * @param commit if true, the transaction is committed, otherwise it is rolled back.
+     * @return true if the transaction was committed.
+     */
+    boolean endTransaction(boolean commit) {
+        Connection connection = transactionConnection.get();
+        if (connection == null) {
+            return false;
+        }
+        transactionConnection.remove();
+
+        boolean committed = false;
+        try {
+            if (commit) {
+                connection.commit();
+                committed = true;
+            } else {
+                connection.rollback();
+            }
+        } catch (Exception exception) {
+            exception.printStackTrace();
+            try {
+                connection.rollback();
+            } catch (Exception ignored) {
+            }
+        } finally {
+            try {
+                connection.close();
+            } catch (Exception ignored) {
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * Takes a connection from the pool, reporting the wait to JFR.
+     */
+    private Connection acquireConnection(MetricKey metricKey) throws SQLException {
+        ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+        event.begin();
+        try {
+            return getConnection();
+        } finally {
+            if (event.shouldCommit()) {
+                event.database = getDatabaseId(metricKey);
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Commits a statement event, if it has been started and JFR records it.
+     */
+    private void commitExecuteEvent(StatementExecuteEvent event, MetricKey metricKey, String query, long rows, boolean failed) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.database = getDatabaseId(metricKey);
+        event.entity = metricKey == null ? null : metricKey.entity();
+        event.operation = metricKey == null ? null : metricKey.operation().name();
+        event.fingerprint = SqlFingerprint.of(query);
+        event.rows = rows;
+        event.failed = failed;
+        event.commit();
+    }
+
+    /**
+     * @return the name the database is registered under in the API, or the name of the PostgreSQL database
+     * if it is not registered.
+     */
+    private String getDatabaseId(MetricKey metricKey) {
+        return metricKey == null ? databaseName : metricKey.database();
+    }
+
+    /**
+     * Ends the read transaction of a streamed query and releases its resources. The connection is null for
+     * a cursor of an explicit transaction, which stays open.
+     */
+    private static void closeCursor(Connection connection, PreparedStatement pState, ResultSet result) {
+        try {
+            if (result != null) {
+                result.close();
+            }
+        } catch (Exception ignored) {
+        }
+        try {
+            if (pState != null) {
+                pState.close();
+            }
+        } catch (Exception ignored) {
+        }
+        try {
+            if (connection != null) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+                connection.close();
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * Reads rows of a result set into {@link DBRow}s sharing a single schema.
+     */
+    private static final class DBRowMapper implements ResultSetMapper<DBRow> {
+
+        private DBRowSchema schema;
+
+        @Override
+        public void prepare(final ResultSetMetaData metaData) throws SQLException {
+            this.schema = DBRowSchema.of(metaData);
+        }
+
+        @Override
+        public DBRow map(final ResultSet result) throws SQLException {
+            final Object[] cells = new Object[schema.size()];
+            for (int l = 0; l < cells.length; ++l) {
+                cells[l] = result.getObject(l + 1);
+            }
+            return new DBRow(schema, cells);
+        }
+
+    }
+
 }
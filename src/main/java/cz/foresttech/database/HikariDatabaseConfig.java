@@ -0,0 +1,309 @@
+package cz.foresttech.database;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.time.Duration;
+
+/**
+ * Connection pool and driver settings of a {@link HikariDatabase}.
+ * <p>
+ * The defaults are tuned for game servers, which run a small set of short statements at a high rate:
+ * the pool has a fixed size, waiting for a connection fails fast instead of stalling the caller for the default
+ * 30 seconds, frequently executed statements are prepared on the server early and batched inserts are rewritten
+ * to multi-row statements.
+ */
+public final class HikariDatabaseConfig {
+
+    private static final HikariDatabaseConfig DEFAULTS = builder().build();
+
+    private final int maximumPoolSize;
+    private final int minimumIdle;
+    private final Duration connectionTimeout;
+    private final int prepareThreshold;
+    private final int preparedStatementCacheQueries;
+    private final boolean reWriteBatchedInserts;
+    private final int defaultRowFetchSize;
+    private final boolean binaryTransfer;
+    private final boolean tcpKeepAlive;
+
+    private HikariDatabaseConfig(Builder builder) {
+        this.maximumPoolSize = builder.maximumPoolSize;
+        this.minimumIdle = builder.minimumIdle < 0 ? builder.maximumPoolSize : builder.minimumIdle;
+        this.connectionTimeout = builder.connectionTimeout;
+        this.prepareThreshold = builder.prepareThreshold;
+        this.preparedStatementCacheQueries = builder.preparedStatementCacheQueries;
+        this.reWriteBatchedInserts = builder.reWriteBatchedInserts;
+        this.defaultRowFetchSize = builder.defaultRowFetchSize;
+        this.binaryTransfer = builder.binaryTransfer;
+        this.tcpKeepAlive = builder.tcpKeepAlive;
+    }
+
+    /**
+     * @return the default settings.
+     */
+    public static HikariDatabaseConfig defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * @return a builder initialized with the default settings.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Loads the settings from a configuration section, e.g. the {@code database.pool} section of the plugin config.
+     * Missing keys keep their default values.
+     * <pre>
+     * maximum-pool-size: 10
+     * minimum-idle: 10
+     * connection-timeout: 5000 # milliseconds
+     * prepare-threshold: 3
+     * prepared-statement-cache-queries: 256
+     * rewrite-batched-inserts: true
+     * default-row-fetch-size: 0
+     * binary-transfer: true
+     * tcp-keep-alive: true
+     * </pre>
+     *
+     * @param section the configuration section, or null for the default settings.
+     * @return the loaded settings.
+     * @throws IllegalArgumentException if any of the values is out of range.
+     */
+    public static HikariDatabaseConfig fromConfig(ConfigurationSection section) {
+        if (section == null) {
+            return DEFAULTS;
+        }
+
+        Builder builder = builder();
+        builder.maximumPoolSize(section.getInt("maximum-pool-size", DEFAULTS.maximumPoolSize));
+        if (section.isSet("minimum-idle")) {
+            builder.minimumIdle(section.getInt("minimum-idle"));
+        }
+        builder.connectionTimeout(Duration.ofMillis(section.getLong("connection-timeout", DEFAULTS.connectionTimeout.toMillis())));
+        builder.prepareThreshold(section.getInt("prepare-threshold", DEFAULTS.prepareThreshold));
+        builder.preparedStatementCacheQueries(section.getInt("prepared-statement-cache-queries", DEFAULTS.preparedStatementCacheQueries));
+        builder.reWriteBatchedInserts(section.getBoolean("rewrite-batched-inserts", DEFAULTS.reWriteBatchedInserts));
+        builder.defaultRowFetchSize(section.getInt("default-row-fetch-size", DEFAULTS.defaultRowFetchSize));
+        builder.binaryTransfer(section.getBoolean("binary-transfer", DEFAULTS.binaryTransfer));
+        builder.tcpKeepAlive(section.getBoolean("tcp-keep-alive", DEFAULTS.tcpKeepAlive));
+        return builder.build();
+    }
+
+    /**
+     * Applies the settings to a pool configuration.
+     *
+     * @param config the pool configuration.
+     */
+    void apply(HikariConfig config) {
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(minimumIdle);
+        config.setConnectionTimeout(connectionTimeout.toMillis());
+        config.addDataSourceProperty("prepareThreshold", String.valueOf(prepareThreshold));
+        config.addDataSourceProperty("preparedStatementCacheQueries", String.valueOf(preparedStatementCacheQueries));
+        config.addDataSourceProperty("reWriteBatchedInserts", String.valueOf(reWriteBatchedInserts));
+        config.addDataSourceProperty("defaultRowFetchSize", String.valueOf(defaultRowFetchSize));
+        config.addDataSourceProperty("binaryTransfer", String.valueOf(binaryTransfer));
+        config.addDataSourceProperty("tcpKeepAlive", String.valueOf(tcpKeepAlive));
+    }
+
+    /**
+     * @return the maximum number of pooled connections.
+     */
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    /**
+     * @return the number of idle connections the pool keeps open.
+     */
+    public int getMinimumIdle() {
+        return minimumIdle;
+    }
+
+    /**
+     * @return the time a caller waits for a connection before the call fails.
+     */
+    public Duration getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    /**
+     * @return the number of executions after which a statement is prepared on the server, 0 to disable.
+     */
+    public int getPrepareThreshold() {
+        return prepareThreshold;
+    }
+
+    /**
+     * @return the number of statements prepared on the server cached per connection.
+     */
+    public int getPreparedStatementCacheQueries() {
+        return preparedStatementCacheQueries;
+    }
+
+    /**
+     * @return true if batched inserts are rewritten to multi-row statements.
+     */
+    public boolean isReWriteBatchedInserts() {
+        return reWriteBatchedInserts;
+    }
+
+    /**
+     * @return the number of rows fetched at once in transactions, 0 to fetch all rows.
+     */
+    public int getDefaultRowFetchSize() {
+        return defaultRowFetchSize;
+    }
+
+    /**
+     * @return true if values are transferred in the binary format.
+     */
+    public boolean isBinaryTransfer() {
+        return binaryTransfer;
+    }
+
+    /**
+     * @return true if TCP keep-alive is enabled on the connections.
+     */
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    /**
+     * Builder of {@link HikariDatabaseConfig}.
+     */
+    public static final class Builder {
+
+        private int maximumPoolSize = 10;
+        private int minimumIdle = -1;
+        private Duration connectionTimeout = Duration.ofSeconds(5);
+        private int prepareThreshold = 3;
+        private int preparedStatementCacheQueries = 256;
+        private boolean reWriteBatchedInserts = true;
+        private int defaultRowFetchSize = 0;
+        private boolean binaryTransfer = true;
+        private boolean tcpKeepAlive = true;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maximumPoolSize the maximum number of pooled connections, 10 by default.
+         * @return this builder.
+         */
+        public Builder maximumPoolSize(int maximumPoolSize) {
+            if (maximumPoolSize < 1) {
+                throw new IllegalArgumentException("Maximum pool size must be positive, got " + maximumPoolSize);
+            }
+            this.maximumPoolSize = maximumPoolSize;
+            return this;
+        }
+
+        /**
+         * @param minimumIdle the number of idle connections the pool keeps open, the maximum pool size by default.
+         * @return this builder.
+         */
+        public Builder minimumIdle(int minimumIdle) {
+            if (minimumIdle < 0) {
+                throw new IllegalArgumentException("Minimum idle must not be negative, got " + minimumIdle);
+            }
+            this.minimumIdle = minimumIdle;
+            return this;
+        }
+
+        /**
+         * @param connectionTimeout the time a caller waits for a connection before the call fails, 5 seconds by default.
+         * @return this builder.
+         */
+        public Builder connectionTimeout(Duration connectionTimeout) {
+            // HikariCP refuses timeouts below 250 ms
+            if (connectionTimeout == null || connectionTimeout.toMillis() < 250) {
+                throw new IllegalArgumentException("Connection timeout must be at least 250 ms, got " + connectionTimeout);
+            }
+            this.connectionTimeout = connectionTimeout;
+            return this;
+        }
+
+        /**
+         * @param prepareThreshold the number of executions after which a statement is prepared on the server,
+         *                         0 to disable, 3 by default.
+         * @return this builder.
+         */
+        public Builder prepareThreshold(int prepareThreshold) {
+            if (prepareThreshold < 0) {
+                throw new IllegalArgumentException("Prepare threshold must not be negative, got " + prepareThreshold);
+            }
+            this.prepareThreshold = prepareThreshold;
+            return this;
+        }
+
+        /**
+         * @param preparedStatementCacheQueries the number of statements prepared on the server cached per connection,
+         *                                      256 by default.
+         * @return this builder.
+         */
+        public Builder preparedStatementCacheQueries(int preparedStatementCacheQueries) {
+            if (preparedStatementCacheQueries < 0) {
+                throw new IllegalArgumentException("Prepared statement cache size must not be negative, got " + preparedStatementCacheQueries);
+            }
+            this.preparedStatementCacheQueries = preparedStatementCacheQueries;
+            return this;
+        }
+
+        /**
+         * @param reWriteBatchedInserts if true, batched inserts are rewritten to multi-row statements, true by default.
+         * @return this builder.
+         */
+        public Builder reWriteBatchedInserts(boolean reWriteBatchedInserts) {
+            this.reWriteBatchedInserts = reWriteBatchedInserts;
+            return this;
+        }
+
+        /**
+         * @param defaultRowFetchSize the number of rows fetched at once in transactions, 0 to fetch all rows, 0 by default.
+         *                            Streams always fetch rows in chunks.
+         * @return this builder.
+         */
+        public Builder defaultRowFetchSize(int defaultRowFetchSize) {
+            if (defaultRowFetchSize < 0) {
+                throw new IllegalArgumentException("Row fetch size must not be negative, got " + defaultRowFetchSize);
+            }
+            this.defaultRowFetchSize = defaultRowFetchSize;
+            return this;
+        }
+
+        /**
+         * @param binaryTransfer if true, values are transferred in the binary format, true by default.
+         * @return this builder.
+         */
+        public Builder binaryTransfer(boolean binaryTransfer) {
+            this.binaryTransfer = binaryTransfer;
+            return this;
+        }
+
+        /**
+         * @param tcpKeepAlive if true, TCP keep-alive is enabled on the connections, true by default.
+         * @return this builder.
+         */
+        public Builder tcpKeepAlive(boolean tcpKeepAlive) {
+            this.tcpKeepAlive = tcpKeepAlive;
+            return this;
+        }
+
+        /**
+         * @return the settings.
+         * @throws IllegalArgumentException if the minimum idle exceeds the maximum pool size.
+         */
+        public HikariDatabaseConfig build() {
+            if (minimumIdle > maximumPoolSize) {
+                throw new IllegalArgumentException("Minimum idle " + minimumIdle + " exceeds maximum pool size " + maximumPoolSize);
+            }
+            return new HikariDatabaseConfig(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,161 @@
+package cz.foresttech.database;
+
+import org.bukkit.Bukkit;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Detects database calls made on the server thread and accounts the time they block each tick.
+ * The watchdog is attached to databases by {@link DatabaseAPI#setMainThreadWatchdog(Mode, Duration)},
+ * which also resets the per-tick accounting every tick.
+ */
+public final class MainThreadWatchdog {
+
+    /**
+     * Reaction to a database call made on the server thread.
+     */
+    public enum Mode {
+        /**
+         * Calls are neither accounted nor reported.
+         */
+        OFF,
+        /**
+         * Every call is logged with its stack trace.
+         */
+        LOG,
+        /**
+         * A call is logged with its stack trace once the time spent in the database during the tick exceeds the budget.
+         */
+        WARN,
+        /**
+         * Calls are refused with an {@link IllegalStateException}.
+         */
+        REJECT
+    }
+
+    private final Mode mode;
+    private final long budgetNanos;
+    private final Logger logger;
+
+    private final LongAdder blockingCalls;
+    private final LongAdder totalBlockingNanos;
+    private volatile long tickNanos;
+    private volatile long lastTickNanos;
+    private volatile long maxTickNanos;
+    private boolean warnedThisTick;
+
+    /**
+     * @param mode   the reaction to calls made on the server thread.
+     * @param budget the time the server thread may spend in the database per tick before a warning, used by {@link Mode#WARN}.
+     * @param logger the logger of reported calls.
+     */
+    MainThreadWatchdog(Mode mode, Duration budget, Logger logger) {
+        this.mode = mode;
+        this.budgetNanos = budget == null ? 0 : budget.toNanos();
+        this.logger = logger == null ? Logger.getLogger("ForestDatabase") : logger;
+        this.blockingCalls = new LongAdder();
+        this.totalBlockingNanos = new LongAdder();
+    }
+
+    /**
+     * Marks the start of a database call.
+     *
+     * @param query the executed SQL.
+     * @return the start time to be passed to {@link #end(long, String)}, or -1 if the call is not watched.
+     * @throws IllegalStateException if the call is made on the server thread in the {@link Mode#REJECT} mode.
+     */
+    long begin(String query) {
+        if (mode == Mode.OFF || !Bukkit.isPrimaryThread()) {
+            return -1;
+        }
+
+        if (mode == Mode.REJECT) {
+            throw new IllegalStateException("Synchronous database call on the server thread: " + query);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a database call and reports it according to the mode.
+     *
+     * @param start the value returned by {@link #begin(String)}.
+     * @param query the executed SQL.
+     */
+    void end(long start, String query) {
+        if (start < 0) {
+            return;
+        }
+
+        long duration = System.nanoTime() - start;
+        blockingCalls.increment();
+        totalBlockingNanos.add(duration);
+        // Only the server thread gets here, so the tick counter is not contended
+        long spent = tickNanos + duration;
+        tickNanos = spent;
+
+        if (mode == Mode.LOG) {
+            logger.log(Level.INFO, String.format("Database call blocked the server thread for %.2f ms: %s",
+                    duration / 1_000_000.0, query), new Throwable("Called from"));
+        } else if (mode == Mode.WARN && spent > budgetNanos && !warnedThisTick) {
+            warnedThisTick = true;
+            logger.log(Level.WARNING, String.format("Database calls blocked the server thread for %.2f ms this tick (budget %.2f ms), last call: %s",
+                    spent / 1_000_000.0, budgetNanos / 1_000_000.0, query), new Throwable("Called from"));
+        }
+    }
+
+    /**
+     * Closes the accounting of the current tick. Called on the server thread once per tick.
+     */
+    void tick() {
+        long spent = tickNanos;
+        lastTickNanos = spent;
+        if (spent > maxTickNanos) {
+            maxTickNanos = spent;
+        }
+        tickNanos = 0;
+        warnedThisTick = false;
+    }
+
+    /**
+     * @return the reaction to calls made on the server thread.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the number of database calls made on the server thread.
+     */
+    public long getBlockingCalls() {
+        return blockingCalls.sum();
+    }
+
+    /**
+     * @param unit the unit of the returned time.
+     * @return the total time the server thread spent in database calls.
+     */
+    public long getTotalBlockingTime(TimeUnit unit) {
+        return unit.convert(totalBlockingNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit the unit of the returned time.
+     * @return the time the server thread spent in database calls during the last completed tick.
+     */
+    public long getLastTickBlockingTime(TimeUnit unit) {
+        return unit.convert(lastTickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit the unit of the returned time.
+     * @return the longest time the server thread spent in database calls during a single tick.
+     */
+    public long getMaxTickBlockingTime(TimeUnit unit) {
+        return unit.convert(maxTickNanos, TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,67 @@
+package cz.foresttech.database;
+
+/**
+ * {@link FieldAccessor} delegating to a generated {@link EntityMapper}.
+ * Primitive columns are accessed through the typed methods of the mapper, so their values are not boxed.
+ */
+final class MapperFieldAccessor implements FieldAccessor {
+
+    private final EntityMapper<Object> mapper;
+    private final int column;
+
+    MapperFieldAccessor(EntityMapper<Object> mapper, int column) {
+        this.mapper = mapper;
+        this.column = column;
+    }
+
+    @Override
+    public Object get(Object instance) {
+        return mapper.get(instance, column);
+    }
+
+    @Override
+    public void set(Object instance, Object value) {
+        mapper.set(instance, column, value);
+    }
+
+    @Override
+    public int getInt(Object instance) {
+        return mapper.getInt(instance, column);
+    }
+
+    @Override
+    public void setInt(Object instance, int value) {
+        mapper.setInt(instance, column, value);
+    }
+
+    @Override
+    public long getLong(Object instance) {
+        return mapper.getLong(instance, column);
+    }
+
+    @Override
+    public void setLong(Object instance, long value) {
+        mapper.setLong(instance, column, value);
+    }
+
+    @Override
+    public double getDouble(Object instance) {
+        return mapper.getDouble(instance, column);
+    }
+
+    @Override
+    public void setDouble(Object instance, double value) {
+        mapper.setDouble(instance, column, value);
+    }
+
+    @Override
+    public boolean getBoolean(Object instance) {
+        return mapper.getBoolean(instance, column);
+    }
+
+    @Override
+    public void setBoolean(Object instance, boolean value) {
+        mapper.setBoolean(instance, column, value);
+    }
+
+}
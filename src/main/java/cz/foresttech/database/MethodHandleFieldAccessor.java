@@ -0,0 +1,235 @@
+package cz.foresttech.database;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+/**
+ * {@link FieldAccessor} backed by method handles obtained through a private lookup in the declaring class.
+ * Handles are adapted to exact erased signatures once, so every call is a monomorphic {@code invokeExact}.
+ * <p>
+ * This class is a template: {@link #create(Field)} defines a hidden copy of it for every field, which receives
+ * the handles of the field as class data and keeps them in static final fields. Unlike handles held in instance
+ * fields, those are constants for the JIT compiler, so the field access is inlined into the caller.
+ */
+final class MethodHandleFieldAccessor implements FieldAccessor {
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    // Class file of this template, read once when the first accessor is created
+    private static volatile byte[] templateBytes;
+
+    private static final Class<?> TYPE;
+    private static final MethodHandle FIELD_GETTER;
+    private static final MethodHandle FIELD_SETTER;
+    private static final MethodHandle PRIMITIVE_GETTER;
+    private static final MethodHandle PRIMITIVE_SETTER;
+
+    static {
+        Object[] data;
+        try {
+            data = MethodHandles.classData(MethodHandles.lookup(), ConstantDescs.DEFAULT_NAME, Object[].class);
+        } catch (IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+
+        // The template itself has no class data and is never instantiated
+        if (data == null) {
+            TYPE = null;
+            FIELD_GETTER = null;
+            FIELD_SETTER = null;
+            PRIMITIVE_GETTER = null;
+            PRIMITIVE_SETTER = null;
+        } else {
+            TYPE = (Class<?>) data[0];
+            FIELD_GETTER = (MethodHandle) data[1];
+            FIELD_SETTER = (MethodHandle) data[2];
+            PRIMITIVE_GETTER = (MethodHandle) data[3];
+            PRIMITIVE_SETTER = (MethodHandle) data[4];
+        }
+    }
+
+    private MethodHandleFieldAccessor() {
+    }
+
+    /**
+     * Creates the accessor of a field as a hidden class holding the handles of the field.
+     *
+     * @param field the field to be accessed.
+     * @return the accessor.
+     * @throws IllegalAccessException if the field cannot be unreflected, e.g. because it is final.
+     */
+    static FieldAccessor create(Field field) throws IllegalAccessException {
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+        MethodHandle rawGetter = lookup.unreflectGetter(field);
+        MethodHandle rawSetter = lookup.unreflectSetter(field);
+
+        Class<?> type = field.getType();
+        Object[] data = new Object[5];
+        data[0] = type;
+        data[1] = rawGetter.asType(GETTER);
+        data[2] = rawSetter.asType(SETTER);
+        if (type == int.class || type == long.class || type == double.class || type == boolean.class) {
+            data[3] = rawGetter.asType(MethodType.methodType(type, Object.class));
+            data[4] = rawSetter.asType(MethodType.methodType(void.class, Object.class, type));
+        }
+
+        try {
+            MethodHandles.Lookup hiddenLookup = MethodHandles.lookup().defineHiddenClassWithClassData(getTemplateBytes(), data, true);
+            return (FieldAccessor) hiddenLookup.findConstructor(hiddenLookup.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (RuntimeException | VirtualMachineError e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("Cannot define the accessor of " + field, throwable);
+        }
+    }
+
+    private static byte[] getTemplateBytes() throws IOException {
+        byte[] bytes = templateBytes;
+        if (bytes == null) {
+            try (InputStream input = MethodHandleFieldAccessor.class.getResourceAsStream("MethodHandleFieldAccessor.class")) {
+                if (input == null) {
+                    throw new IOException("Class file of " + MethodHandleFieldAccessor.class.getName() + " not found");
+                }
+                bytes = input.readAllBytes();
+            }
+            templateBytes = bytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    public Object get(Object instance) {
+        try {
+            return (Object) FIELD_GETTER.invokeExact(instance);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    @Override
+    public void set(Object instance, Object value) {
+        try {
+            FIELD_SETTER.invokeExact(instance, value);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    @Override
+    public int getInt(Object instance) {
+        if (TYPE != int.class) {
+            return FieldAccessor.super.getInt(instance);
+        }
+        try {
+            return (int) PRIMITIVE_GETTER.invokeExact(instance);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    @Override
+    public void setInt(Object instance, int value) {
+        if (TYPE != int.class) {
+            FieldAccessor.super.setInt(instance, value);
+            return;
+        }
+        try {
+            PRIMITIVE_SETTER.invokeExact(instance, value);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    @Override
+    public long getLong(Object instance) {
+        if (TYPE != long.class) {
+            return FieldAccessor.super.getLong(instance);
+        }
+        try {
+            return (long) PRIMITIVE_GETTER.invokeExact(instance);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    @Override
+    public void setLong(Object instance, long value) {
+        if (TYPE != long.class) {
+            FieldAccessor.super.setLong(instance, value);
+            return;
+        }
+        try {
+            PRIMITIVE_SETTER.invokeExact(instance, value);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    @Override
+    public double getDouble(Object instance) {
+        if (TYPE != double.class) {
+            return FieldAccessor.super.getDouble(instance);
+        }
+        try {
+            return (double) PRIMITIVE_GETTER.invokeExact(instance);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    @Override
+    public void setDouble(Object instance, double value) {
+        if (TYPE != double.class) {
+            FieldAccessor.super.setDouble(instance, value);
+            return;
+        }
+        try {
+            PRIMITIVE_SETTER.invokeExact(instance, value);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    @Override
+    public boolean getBoolean(Object instance) {
+        if (TYPE != boolean.class) {
+            return FieldAccessor.super.getBoolean(instance);
+        }
+        try {
+            return (boolean) PRIMITIVE_GETTER.invokeExact(instance);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    @Override
+    public void setBoolean(Object instance, boolean value) {
+        if (TYPE != boolean.class) {
+            FieldAccessor.super.setBoolean(instance, value);
+            return;
+        }
+        try {
+            PRIMITIVE_SETTER.invokeExact(instance, value);
+        } catch (Throwable throwable) {
+            throw rethrow(throwable);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable throwable) {
+        if (throwable instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (throwable instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(throwable);
+    }
+
+}
@@ -0,0 +1,34 @@
+package cz.foresttech.database;
+
+import java.lang.reflect.Field;
+
+/**
+ * Fallback {@link FieldAccessor} using plain reflection, used when method handles cannot be created.
+ */
+final class ReflectionFieldAccessor implements FieldAccessor {
+
+    private final Field field;
+
+    ReflectionFieldAccessor(Field field) {
+        this.field = field;
+    }
+
+    @Override
+    public Object get(Object instance) {
+        try {
+            return field.get(instance);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void set(Object instance, Object value) {
+        try {
+            field.set(instance, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
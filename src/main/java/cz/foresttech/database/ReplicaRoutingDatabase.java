@@ -0,0 +1,366 @@
+package cz.foresttech.database;
+
+import cz.foresttech.database.metrics.DatabaseMetrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Database spreading reads over read replicas of a primary database.
+ * <p>
+ * Plain {@code SELECT} queries and streams are executed on one of the replicas, everything else, i.e. writes,
+ * DDL, locking reads, batches and raw connections, on the primary. Replicas lag behind the primary, so a read
+ * following a write may not see it. Reads which must see earlier writes can be made in a
+ * {@link #readYourWrites(Object)} scope: once a write is made in a scope of a key, reads in scopes of the same key
+ * are executed on the primary until the read-your-writes window passes.
+ * <p>
+ * Whether a statement only reads is guessed from its text, see {@link #isRead(String)}: a statement is a read if it
+ * starts with {@code SELECT} and contains neither a locking clause ({@code FOR UPDATE}, {@code FOR SHARE}, ...),
+ * nor {@code INTO}, nor a call of the sequence or advisory lock functions. Other functions with side effects, e.g.
+ * user-defined functions writing to tables, cannot be recognized. Statements calling them must be executed in
+ * a {@link #usePrimary()} scope, which sends every statement to the primary.
+ */
+public class ReplicaRoutingDatabase implements ForestDatabase {
+
+    /**
+     * Selection of the replica executing a read.
+     */
+    public enum Strategy {
+        /**
+         * Replicas take turns.
+         */
+        ROUND_ROBIN,
+        /**
+         * The replica with the lowest recent read latency is used. Every 32nd read is sent to the next replica
+         * in turn instead, so the latencies of the other replicas stay up to date.
+         */
+        LEAST_LATENCY
+    }
+
+    private static final Pattern LOCKING_CLAUSE = Pattern.compile("\\bFOR\\s+(NO\\s+KEY\\s+)?(UPDATE|SHARE|KEY\\s+SHARE)\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern WRITING_CLAUSE = Pattern.compile(
+            "\\bINTO\\b|\\b(NEXTVAL|SETVAL|CURRVAL|LASTVAL|PG_(TRY_)?ADVISORY_\\w*)\\s*\\(", Pattern.CASE_INSENSITIVE);
+    private static final int LATENCY_PROBE_INTERVAL = 32;
+
+    private final ForestDatabase primary;
+    private final List<ForestDatabase> replicas;
+    private final Strategy strategy;
+    private final AtomicInteger nextReplica;
+    private final AtomicLongArray replicaLatencies;
+
+    private final ThreadLocal<Object> sessionKey;
+    private final ThreadLocal<Boolean> primaryOnly;
+    private final Map<Object, Long> lastWrites;
+    private volatile long readYourWritesNanos;
+    private volatile long lastExpunge;
+
+    /**
+     * @param primary  the database executing writes.
+     * @param replicas the replicas of the primary executing reads. Reads are executed on the primary if empty.
+     * @param strategy the selection of the replica executing a read.
+     */
+    public ReplicaRoutingDatabase(ForestDatabase primary, List<? extends ForestDatabase> replicas, Strategy strategy) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.strategy = strategy;
+        this.nextReplica = new AtomicInteger();
+        // Exponentially weighted moving average of read latency in nanoseconds, 0 until the first read
+        this.replicaLatencies = new AtomicLongArray(this.replicas.size());
+        this.sessionKey = new ThreadLocal<>();
+        this.primaryOnly = new ThreadLocal<>();
+        this.lastWrites = new ConcurrentHashMap<>();
+        this.readYourWritesNanos = Duration.ofSeconds(5).toNanos();
+        this.lastExpunge = System.nanoTime();
+    }
+
+    /**
+     * Sets how long reads of a key are executed on the primary after a write of the same key. 5 seconds by default,
+     * which should exceed the usual replication lag.
+     *
+     * @param window the read-your-writes window.
+     */
+    public void setReadYourWritesWindow(Duration window) {
+        this.readYourWritesNanos = window.toNanos();
+    }
+
+    /**
+     * Marks statements executed by the current thread until the scope is closed as made on behalf of the given key,
+     * e.g. a player UUID. Reads in the scope are executed on the primary if a write has been made in a scope
+     * of the same key within the read-your-writes window. Scopes can be nested, the innermost one applies.
+     * <p>
+     * The scope is bound to the current thread, so it covers synchronous calls of {@link DatabaseAPI} only.
+     *
+     * @param key the key of the caller.
+     * @return the scope to be closed once the calls are made.
+     */
+    public Scope readYourWrites(Object key) {
+        Object previous = sessionKey.get();
+        sessionKey.set(key);
+        return () -> {
+            if (previous == null) {
+                sessionKey.remove();
+            } else {
+                sessionKey.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Executes all statements of the current thread on the primary until the scope is closed, e.g. reads calling
+     * functions with side effects, which are not recognized as writes, or reads which must not lag behind.
+     * Scopes can be nested.
+     * <p>
+     * The scope is bound to the current thread, so it covers synchronous calls of {@link DatabaseAPI} only.
+     *
+     * @return the scope to be closed once the calls are made.
+     */
+    public Scope usePrimary() {
+        Boolean previous = primaryOnly.get();
+        primaryOnly.set(Boolean.TRUE);
+        return () -> {
+            if (previous == null) {
+                primaryOnly.remove();
+            } else {
+                primaryOnly.set(previous);
+            }
+        };
+    }
+
+    /**
+     * @return the database executing writes.
+     */
+    public ForestDatabase getPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return the replicas executing reads.
+     */
+    public List<ForestDatabase> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    public void setup() {
+        primary.setup();
+        replicas.forEach(ForestDatabase::setup);
+    }
+
+    /**
+     * Connections are always provided by the primary, as their use is not known.
+     */
+    @Override
+    public Connection getConnection() throws Exception {
+        markWrite();
+        return primary.getConnection();
+    }
+
+    @Override
+    public void close() {
+        primary.close();
+        replicas.forEach(ForestDatabase::close);
+    }
+
+    @Override
+    public ArrayList<DBRow> query(String query, Object... variables) {
+        if (!isRead(query)) {
+            markWrite();
+            return primary.query(query, variables);
+        }
+
+        int replica = selectReplica();
+        if (replica < 0) {
+            return primary.query(query, variables);
+        }
+
+        long start = System.nanoTime();
+        ArrayList<DBRow> rows = replicas.get(replica).query(query, variables);
+        recordLatency(replica, System.nanoTime() - start);
+        return rows;
+    }
+
+    @Override
+    public <T> List<T> query(String query, ResultSetMapper<T> mapper, Object... variables) {
+        if (!isRead(query)) {
+            markWrite();
+            return primary.query(query, mapper, variables);
+        }
+
+        int replica = selectReplica();
+        if (replica < 0) {
+            return primary.query(query, mapper, variables);
+        }
+
+        long start = System.nanoTime();
+        List<T> rows = replicas.get(replica).query(query, mapper, variables);
+        recordLatency(replica, System.nanoTime() - start);
+        return rows;
+    }
+
+    @Override
+    public <T> List<T> queryChecked(String query, ResultSetMapper<T> mapper, Object... variables) throws SQLException {
+        if (!isRead(query)) {
+            markWrite();
+            return primary.queryChecked(query, mapper, variables);
+        }
+
+        int replica = selectReplica();
+        if (replica < 0) {
+            return primary.queryChecked(query, mapper, variables);
+        }
+
+        long start = System.nanoTime();
+        List<T> rows = replicas.get(replica).queryChecked(query, mapper, variables);
+        recordLatency(replica, System.nanoTime() - start);
+        return rows;
+    }
+
+    @Override
+    public boolean batch(String query, List<Object[]> parameters, int batchSize) {
+        markWrite();
+        return primary.batch(query, parameters, batchSize);
+    }
+
+    @Override
+    public Stream<DBRow> stream(String query, int fetchSize, Object... variables) {
+        if (!isRead(query)) {
+            markWrite();
+            return primary.stream(query, fetchSize, variables);
+        }
+
+        int replica = selectReplica();
+        return replica < 0 ? primary.stream(query, fetchSize, variables) : replicas.get(replica).stream(query, fetchSize, variables);
+    }
+
+    @Override
+    public <T> Stream<T> stream(String query, int fetchSize, ResultSetMapper<T> mapper, Object... variables) {
+        if (!isRead(query)) {
+            markWrite();
+            return primary.stream(query, fetchSize, mapper, variables);
+        }
+
+        int replica = selectReplica();
+        return replica < 0 ? primary.stream(query, fetchSize, mapper, variables)
+                : replicas.get(replica).stream(query, fetchSize, mapper, variables);
+    }
+
+    @Override
+    public void setMainThreadWatchdog(MainThreadWatchdog watchdog) {
+        primary.setMainThreadWatchdog(watchdog);
+        replicas.forEach(replica -> replica.setMainThreadWatchdog(watchdog));
+    }
+
+    /**
+     * Attaches the recorder to the primary and all replicas, so the metrics of all pools are combined.
+     */
+    @Override
+    public void setDatabaseMetrics(DatabaseMetrics metrics) {
+        primary.setDatabaseMetrics(metrics);
+        replicas.forEach(replica -> replica.setDatabaseMetrics(metrics));
+    }
+
+    /**
+     * Decides whether a statement can be executed on a replica, i.e. it is a plain {@code SELECT}
+     * without a locking clause, without {@code INTO} and without calls of the sequence or advisory lock functions.
+     * Text of literals and comments is matched as well, which may only send a read to the primary.
+     *
+     * @param query the statement.
+     * @return true if the statement only reads.
+     */
+    static boolean isRead(String query) {
+        int start = 0;
+        while (start < query.length() && (Character.isWhitespace(query.charAt(start)) || query.charAt(start) == '(')) {
+            start++;
+        }
+        if (!query.regionMatches(true, start, "SELECT", 0, 6)) {
+            return false;
+        }
+        return !LOCKING_CLAUSE.matcher(query).find() && !WRITING_CLAUSE.matcher(query).find();
+    }
+
+    /**
+     * Selects the replica executing a read of the current thread.
+     *
+     * @return the index of the replica, or -1 if the read has to be executed on the primary.
+     */
+    private int selectReplica() {
+        if (replicas.isEmpty() || primaryOnly.get() != null || isPinnedToPrimary()) {
+            return -1;
+        }
+
+        int turn = nextReplica.getAndIncrement() & Integer.MAX_VALUE;
+        if (strategy == Strategy.ROUND_ROBIN || turn % LATENCY_PROBE_INTERVAL == 0) {
+            return turn % replicas.size();
+        }
+
+        int best = 0;
+        long bestLatency = Long.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            long latency = replicaLatencies.get(i);
+            if (latency < bestLatency) {
+                best = i;
+                bestLatency = latency;
+            }
+        }
+        return best;
+    }
+
+    private void recordLatency(int replica, long nanos) {
+        long average = replicaLatencies.get(replica);
+        // Weight of 1/8 for the latest read; races between threads only lose a sample
+        replicaLatencies.set(replica, average == 0 ? nanos : average + (nanos - average) / 8);
+    }
+
+    private boolean isPinnedToPrimary() {
+        Object key = sessionKey.get();
+        if (key == null) {
+            return false;
+        }
+
+        Long lastWrite = lastWrites.get(key);
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.nanoTime() - lastWrite < readYourWritesNanos) {
+            return true;
+        }
+        lastWrites.remove(key, lastWrite);
+        return false;
+    }
+
+    private void markWrite() {
+        Object key = sessionKey.get();
+        if (key == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        lastWrites.put(key, now);
+        // Keys which are not read again are dropped once per window
+        if (now - lastExpunge > readYourWritesNanos) {
+            lastExpunge = now;
+            lastWrites.values().removeIf(lastWrite -> now - lastWrite >= readYourWritesNanos);
+        }
+    }
+
+    /**
+     * Scope of calls made on behalf of a single key.
+     */
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+
+    }
+
+}
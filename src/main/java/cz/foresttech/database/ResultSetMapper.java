@@ -0,0 +1,32 @@
+package cz.foresttech.database;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Maps rows of a live {@link ResultSet} to objects.
+ * A new mapper should be used for every query, as it may keep a plan computed from the result set metadata.
+ *
+ * @param <T> the type of mapped objects.
+ */
+@FunctionalInterface
+public interface ResultSetMapper<T> {
+
+    /**
+     * Called once before the first row is mapped.
+     *
+     * @param metaData the metadata of the result set.
+     */
+    default void prepare(ResultSetMetaData metaData) throws SQLException {
+    }
+
+    /**
+     * Maps the current row of the result set.
+     *
+     * @param result the result set positioned on a row, must not be advanced by the mapper.
+     * @return the mapped object, or null to skip the row.
+     */
+    T map(ResultSet result) throws SQLException;
+
+}
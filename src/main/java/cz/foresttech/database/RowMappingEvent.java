@@ -0,0 +1,30 @@
+package cz.foresttech.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of reading the rows of a query result.
+ */
+@Name("cz.foresttech.database.RowMapping")
+@Label("Row Mapping")
+@Category("ForestDatabase")
+@Description("Fetching and mapping the rows of a query result")
+final class RowMappingEvent extends Event {
+
+    @Label("Database")
+    String database;
+
+    @Label("Entity")
+    Class<?> entity;
+
+    @Label("SQL Fingerprint")
+    String fingerprint;
+
+    @Label("Rows")
+    long rows;
+
+}
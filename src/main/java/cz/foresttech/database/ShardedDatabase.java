@@ -0,0 +1,351 @@
+package cz.foresttech.database;
+
+import cz.foresttech.database.metrics.DatabaseMetrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Database splitting the rows of every entity over several shards by primary key.
+ * <p>
+ * Keys are assigned to shards using a consistent hash ring, on which every shard owns a number of points derived
+ * from its name. Adding a shard therefore moves only the keys it takes over, and the order of the shards does not
+ * matter. Key values are hashed by their string form, so e.g. an {@code int} and a {@code long} key of the same
+ * value belong to the same shard.
+ * <p>
+ * {@link DatabaseAPI} routes operations on single entities to the shard owning their key and runs queries of
+ * multiple entities on all shards in parallel, merging the results. Raw queries executed directly on this database
+ * are executed on every shard, which is allowed for reads and DDL only, so a raw {@code INSERT} or {@code UPDATE}
+ * is not duplicated on every shard by mistake. Other statements have to be executed on the shard returned by
+ * {@link #getShard(Object...)}, or explicitly on all shards by {@link #executeOnAllShards(String, Object...)}.
+ * Keys must be assigned by the application, as keys generated by a shard are not unique across shards.
+ * Writes spanning several shards are committed by each shard separately.
+ */
+public class ShardedDatabase implements ForestDatabase {
+
+    private static final int DEFAULT_VIRTUAL_NODES = 160;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final Pattern DDL = Pattern.compile("^[\\s(]*(CREATE|ALTER|DROP|COMMENT|GRANT|REVOKE)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final Map<String, ForestDatabase> shards;
+    private final List<ForestDatabase> shardList;
+    private final long[] ringPoints;
+    private final int[] ringOwners;
+
+    /**
+     * @param shards the shards by their unique name.
+     */
+    public ShardedDatabase(Map<String, ? extends ForestDatabase> shards) {
+        this(shards, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param shards       the shards by their unique name.
+     * @param virtualNodes the number of points every shard owns on the hash ring, more points spread keys more evenly.
+     */
+    public ShardedDatabase(Map<String, ? extends ForestDatabase> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Number of virtual nodes must be positive, got " + virtualNodes);
+        }
+
+        this.shards = new LinkedHashMap<>(shards);
+        this.shardList = List.copyOf(this.shards.values());
+
+        List<String> names = new ArrayList<>(this.shards.keySet());
+        long[][] points = new long[names.size() * virtualNodes][];
+        for (int shard = 0; shard < names.size(); shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                points[shard * virtualNodes + node] = new long[]{hash(names.get(shard) + "#" + node), shard};
+            }
+        }
+        Arrays.sort(points, (first, second) -> Long.compare(first[0], second[0]));
+
+        this.ringPoints = new long[points.length];
+        this.ringOwners = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            ringPoints[i] = points[i][0];
+            ringOwners[i] = (int) points[i][1];
+        }
+    }
+
+    /**
+     * Finds the shard owning a primary key.
+     *
+     * @param keyParameters the primary key values as bound to statements, in the order of the key columns.
+     * @return the shard.
+     */
+    public ForestDatabase getShard(Object... keyParameters) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < keyParameters.length; i++) {
+            if (i > 0) {
+                hash = update(hash, '\0');
+            }
+            String value = Objects.toString(keyParameters[i]);
+            for (int j = 0; j < value.length(); j++) {
+                hash = update(hash, value.charAt(j));
+            }
+        }
+
+        int index = Arrays.binarySearch(ringPoints, mix(hash));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // The first point past the end of the ring is its start
+        return shardList.get(ringOwners[index == ringPoints.length ? 0 : index]);
+    }
+
+    /**
+     * @return the shards by their name, in the order they were given.
+     */
+    public Map<String, ForestDatabase> getShards() {
+        return Collections.unmodifiableMap(shards);
+    }
+
+    /**
+     * Runs a query on multiple shards in parallel and merges their results in the order of the shards.
+     * The first shard is queried by the calling thread, which also runs the queries the executor has not
+     * started by the time it finishes, so queries made from the executor threads cannot exhaust them.
+     *
+     * @param shards   the shards to be queried.
+     * @param executor the executor running the queries of the other shards.
+     * @param query    the query of a single shard.
+     * @return the merged results.
+     */
+    <R> List<R> queryAll(Collection<ForestDatabase> shards, Executor executor, Function<ForestDatabase, List<R>> query) {
+        List<ShardQuery<R>> queries = new ArrayList<>(shards.size());
+        for (ForestDatabase shard : shards) {
+            queries.add(new ShardQuery<>(shard, query));
+        }
+        for (int i = 1; i < queries.size(); i++) {
+            executor.execute(queries.get(i));
+        }
+        queries.forEach(ShardQuery::run);
+
+        List<R> result = new ArrayList<>();
+        for (ShardQuery<R> shardQuery : queries) {
+            try {
+                result.addAll(shardQuery.future.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void setup() {
+        shardList.forEach(ForestDatabase::setup);
+    }
+
+    /**
+     * Connections cannot be provided, as it is not known which shard the statements belong to.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public Connection getConnection() {
+        throw new UnsupportedOperationException("A sharded database does not provide connections, use getShard() instead");
+    }
+
+    @Override
+    public void close() {
+        shardList.forEach(ForestDatabase::close);
+    }
+
+    /**
+     * Executes the query on every shard, one after another.
+     *
+     * @return the rows returned by all shards.
+     * @throws UnsupportedOperationException if the query is neither a read nor DDL.
+     */
+    @Override
+    public ArrayList<DBRow> query(String query, Object... variables) {
+        checkBroadcast(query);
+        return new ArrayList<>(queryAll(shardList, Runnable::run, shard -> shard.query(query, variables)));
+    }
+
+    /**
+     * Executes the query on every shard, one after another.
+     *
+     * @return the rows returned by all shards.
+     * @throws UnsupportedOperationException if the query is neither a read nor DDL.
+     */
+    @Override
+    public <T> List<T> query(String query, ResultSetMapper<T> mapper, Object... variables) {
+        checkBroadcast(query);
+        return queryAll(shardList, Runnable::run, shard -> shard.query(query, mapper, variables));
+    }
+
+    /**
+     * Executes the query on every shard, one after another, until a shard fails.
+     *
+     * @return the rows returned by all shards.
+     * @throws UnsupportedOperationException if the query is neither a read nor DDL.
+     */
+    @Override
+    public <T> List<T> queryChecked(String query, ResultSetMapper<T> mapper, Object... variables) throws SQLException {
+        checkBroadcast(query);
+        List<T> rows = new ArrayList<>();
+        for (ForestDatabase shard : shardList) {
+            rows.addAll(shard.queryChecked(query, mapper, variables));
+        }
+        return rows;
+    }
+
+    /**
+     * Batches cannot be executed, as every row may belong to a different shard.
+     *
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public boolean batch(String query, List<Object[]> parameters, int batchSize) {
+        throw new UnsupportedOperationException("A sharded database does not execute batches, use getShard() instead");
+    }
+
+    /**
+     * Executes a statement on every shard, one after another, until a shard fails. Unlike the query methods,
+     * it accepts statements changing data, e.g. a delete of all rows of a table.
+     *
+     * @param statement the statement to be executed.
+     * @param variables the statement parameters.
+     * @return true if the statement succeeded on all shards.
+     */
+    public boolean executeOnAllShards(String statement, Object... variables) {
+        for (ForestDatabase shard : shardList) {
+            try {
+                shard.queryChecked(statement, result -> null, variables);
+            } catch (SQLException exception) {
+                exception.printStackTrace();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Streams the rows of every shard, one shard after another.
+     *
+     * @throws UnsupportedOperationException if the query is not a read.
+     */
+    @Override
+    public Stream<DBRow> stream(String query, int fetchSize, Object... variables) {
+        checkBroadcast(query);
+        return shardList.stream().flatMap(shard -> shard.stream(query, fetchSize, variables));
+    }
+
+    /**
+     * Streams the rows of every shard, one shard after another.
+     *
+     * @throws UnsupportedOperationException if the query is not a read.
+     */
+    @Override
+    public <T> Stream<T> stream(String query, int fetchSize, ResultSetMapper<T> mapper, Object... variables) {
+        checkBroadcast(query);
+        return shardList.stream().flatMap(shard -> shard.stream(query, fetchSize, mapper, variables));
+    }
+
+    @Override
+    public void setMainThreadWatchdog(MainThreadWatchdog watchdog) {
+        shardList.forEach(shard -> shard.setMainThreadWatchdog(watchdog));
+    }
+
+    /**
+     * Attaches the recorder to all shards, so the metrics of all shards are combined.
+     */
+    @Override
+    public void setDatabaseMetrics(DatabaseMetrics metrics) {
+        shardList.forEach(shard -> shard.setDatabaseMetrics(metrics));
+    }
+
+    /**
+     * Only reads and DDL may be executed on every shard, any other statement would be applied once per shard.
+     */
+    private static void checkBroadcast(String query) {
+        if (!ReplicaRoutingDatabase.isRead(query) && !DDL.matcher(query).find()) {
+            throw new UnsupportedOperationException("A sharded database executes only reads and DDL on all shards, "
+                    + "use getShard() or executeOnAllShards() instead");
+        }
+    }
+
+    /**
+     * Hashes a string using 64-bit FNV-1a followed by a finalizer, so hashes do not depend on the JVM.
+     */
+    private static long hash(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash = update(hash, value.charAt(i));
+        }
+        return mix(hash);
+    }
+
+    private static long update(long hash, char value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    /**
+     * Spreads the bits of a FNV hash over the whole range, as similar keys differ in their last characters only.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Query of a single shard, run either by the executor or by the caller, whichever gets to it first.
+     */
+    private static final class ShardQuery<R> implements Runnable {
+
+        private final ForestDatabase shard;
+        private final Function<ForestDatabase, List<R>> query;
+        private final AtomicBoolean claimed;
+        private final CompletableFuture<List<R>> future;
+
+        private ShardQuery(ForestDatabase shard, Function<ForestDatabase, List<R>> query) {
+            this.shard = shard;
+            this.query = query;
+            this.claimed = new AtomicBoolean();
+            this.future = new CompletableFuture<>();
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                future.complete(query.apply(shard));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+package cz.foresttech.database;
+
+import java.time.Instant;
+
+/**
+ * A statement which took longer than the threshold of the {@link SlowQueryLog}.
+ */
+public final class SlowQuery {
+
+    private final Instant timestamp;
+    private final String sql;
+    private final String fingerprint;
+    private final String parameterShape;
+    private final long durationNanos;
+    private final long rows;
+    private final boolean failed;
+    private final StackTraceElement[] stackTrace;
+    private volatile String plan;
+
+    SlowQuery(Instant timestamp, String sql, String fingerprint, String parameterShape, long durationNanos,
+              long rows, boolean failed, StackTraceElement[] stackTrace) {
+        this.timestamp = timestamp;
+        this.sql = sql;
+        this.fingerprint = fingerprint;
+        this.parameterShape = parameterShape;
+        this.durationNanos = durationNanos;
+        this.rows = rows;
+        this.failed = failed;
+        this.stackTrace = stackTrace;
+    }
+
+    /**
+     * @return the time the statement finished.
+     */
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the executed SQL.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return the SQL with literals replaced by placeholders, equal for statements differing only in values.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the types of the bound parameters, e.g. {@code [Integer, String, null]}, without their values.
+     */
+    public String getParameterShape() {
+        return parameterShape;
+    }
+
+    /**
+     * @return the duration of the statement in nanoseconds.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the number of rows returned or written.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return true if the statement failed.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the stack of the thread which executed the statement.
+     */
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace.clone();
+    }
+
+    /**
+     * @return the captured execution plan, or null if the statement was not sampled or the plan is not ready yet.
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    void setPlan(String plan) {
+        this.plan = plan;
+    }
+
+}
@@ -0,0 +1,190 @@
+package cz.foresttech.database;
+
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Logs statements of a {@link HikariDatabase} which take longer than a threshold.
+ * Every slow statement is logged with its fingerprint, parameter types, duration, row count and the stack of
+ * the calling thread, and the most recent ones are kept for inspection.
+ * <p>
+ * Optionally, a sample of slow statements is explained to capture their plan. Plain {@code SELECT} statements
+ * are executed again with {@code EXPLAIN (ANALYZE, BUFFERS)} to get actual row counts and timings, statements
+ * which change data only get the estimated plan of {@code EXPLAIN}, so they are never executed twice.
+ * The explain runs in a transaction which is always rolled back.
+ */
+public class SlowQueryLog {
+
+    private static final int DEFAULT_RETAINED = 100;
+
+    private final long thresholdNanos;
+    private final Logger logger;
+    private final int retained;
+    private final Deque<SlowQuery> recent;
+    private volatile double explainSampleRate;
+    private volatile Executor explainExecutor;
+
+    /**
+     * @param threshold the duration above which statements are logged.
+     */
+    public SlowQueryLog(Duration threshold) {
+        this(threshold, null, DEFAULT_RETAINED);
+    }
+
+    /**
+     * @param threshold the duration above which statements are logged.
+     * @param logger    the logger of slow statements, or null to use the "ForestDatabase" logger.
+     * @param retained  the number of most recent slow statements kept for {@link #getRecent()}.
+     */
+    public SlowQueryLog(Duration threshold, Logger logger, int retained) {
+        this.thresholdNanos = threshold.toNanos();
+        this.logger = logger == null ? Logger.getLogger("ForestDatabase") : logger;
+        this.retained = Math.max(0, retained);
+        this.recent = new ArrayDeque<>();
+    }
+
+    /**
+     * Enables capturing plans of a sample of slow statements.
+     *
+     * @param sampleRate the share of slow statements to be explained, between 0 and 1. 0 disables the sampling.
+     * @param executor   the executor running the EXPLAIN statements.
+     */
+    public void setExplainSampling(double sampleRate, Executor executor) {
+        this.explainExecutor = executor;
+        this.explainSampleRate = Math.min(1, Math.max(0, sampleRate));
+    }
+
+    /**
+     * Records a finished statement, logging it if it exceeded the threshold.
+     *
+     * @param database      the database which executed the statement.
+     * @param sql           the executed SQL.
+     * @param variables     the bound parameters.
+     * @param durationNanos the duration of the statement.
+     * @param rows          the number of rows returned or written.
+     * @param failed        true if the statement failed.
+     * @param explainable   false if the statement shall never be explained, e.g. because it was batched.
+     */
+    void record(HikariDatabase database, String sql, Object[] variables, long durationNanos, long rows, boolean failed,
+                boolean explainable) {
+        if (durationNanos < thresholdNanos) {
+            return;
+        }
+
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        SlowQuery slowQuery = new SlowQuery(Instant.now(), sql, SqlFingerprint.of(sql), getParameterShape(variables),
+                durationNanos, rows, failed, Arrays.copyOfRange(stack, Math.min(2, stack.length), stack.length));
+
+        if (retained > 0) {
+            synchronized (recent) {
+                if (recent.size() >= retained) {
+                    recent.removeFirst();
+                }
+                recent.addLast(slowQuery);
+            }
+        }
+
+        Throwable caller = new Throwable("Called from");
+        caller.setStackTrace(slowQuery.getStackTrace());
+        logger.log(Level.WARNING, String.format(Locale.ROOT, "Slow query (%.2f ms, %d rows%s): %s parameters %s",
+                durationNanos / 1_000_000.0, rows, failed ? ", failed" : "", slowQuery.getFingerprint(),
+                slowQuery.getParameterShape()), caller);
+
+        Executor executor = explainExecutor;
+        if (executor != null && explainable && isExplainable(sql, variables)
+                && ThreadLocalRandom.current().nextDouble() < explainSampleRate) {
+            Object[] parameters = variables.clone();
+            executor.execute(() -> explain(database, slowQuery, parameters));
+        }
+    }
+
+    /**
+     * @return the most recent slow statements, oldest first.
+     */
+    public List<SlowQuery> getRecent() {
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+
+    /**
+     * Runs EXPLAIN of the statement in a rolled back transaction and attaches the plan to the slow query.
+     * Only a {@code SELECT} is analyzed, i.e. executed again.
+     */
+    private void explain(HikariDatabase database, SlowQuery slowQuery, Object[] variables) {
+        String explain = isSelect(slowQuery.getSql()) ? "EXPLAIN (ANALYZE, BUFFERS) " : "EXPLAIN ";
+        Connection connection = null;
+        try {
+            connection = database.getConnection();
+            connection.setAutoCommit(false);
+            try (PreparedStatement pState = connection.prepareStatement(explain + slowQuery.getSql())) {
+                StatementParameters.bind(pState, variables);
+                List<String> lines = new ArrayList<>();
+                try (ResultSet result = pState.executeQuery()) {
+                    while (result.next()) {
+                        lines.add(result.getString(1));
+                    }
+                }
+                slowQuery.setPlan(String.join("\n", lines));
+            }
+            logger.info("Plan of slow query " + slowQuery.getFingerprint() + ":\n" + slowQuery.getPlan());
+        } catch (Exception exception) {
+            exception.printStackTrace();
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                } catch (Exception ignored) {
+                }
+                try {
+                    connection.close();
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * A {@code WITH} statement may contain data-modifying parts, so only statements starting with {@code SELECT}
+     * are considered safe to run again.
+     */
+    private static boolean isSelect(String sql) {
+        return sql.stripLeading().toUpperCase(Locale.ROOT).startsWith("SELECT");
+    }
+
+    /**
+     * Only data statements can be explained, and only if their parameters can be bound again.
+     */
+    private static boolean isExplainable(String sql, Object[] variables) {
+        String statement = sql.stripLeading().toUpperCase(Locale.ROOT);
+        if (!(statement.startsWith("SELECT") || statement.startsWith("INSERT") || statement.startsWith("UPDATE")
+                || statement.startsWith("DELETE") || statement.startsWith("WITH"))) {
+            return false;
+        }
+        return Arrays.stream(variables).noneMatch(variable -> variable instanceof InputStream || variable instanceof Blob);
+    }
+
+    private static String getParameterShape(Object[] variables) {
+        return Arrays.stream(variables)
+                .map(variable -> variable == null ? "null" : variable.getClass().getSimpleName())
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+}
@@ -0,0 +1,76 @@
+package cz.foresttech.database;
+
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes SQL statements, so statements differing only in literal values and placeholder counts
+ * can be grouped together.
+ */
+final class SqlFingerprint {
+
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * Replaces string and numeric literals with placeholders, collapses lists of placeholders
+     * and whitespace.
+     *
+     * @param sql the SQL statement.
+     * @return the fingerprint of the statement.
+     */
+    static String of(String sql) {
+        if (sql == null) {
+            return "";
+        }
+
+        StringBuilder fingerprint = new StringBuilder(sql.length());
+        boolean whitespace = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char character = sql.charAt(i);
+            if (Character.isWhitespace(character)) {
+                whitespace = fingerprint.length() > 0;
+                continue;
+            }
+            if (whitespace) {
+                fingerprint.append(' ');
+                whitespace = false;
+            }
+
+            if (character == '\'') {
+                // Skip the literal, doubled quotes are escaped quotes inside of it
+                i++;
+                while (i < sql.length()) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                fingerprint.append('?');
+            } else if (Character.isDigit(character) && !isIdentifierPart(fingerprint)) {
+                while (i + 1 < sql.length() && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) {
+                    i++;
+                }
+                fingerprint.append('?');
+            } else {
+                fingerprint.append(character);
+            }
+        }
+
+        return PLACEHOLDER_LIST.matcher(fingerprint).replaceAll("?, ...");
+    }
+
+    private static boolean isIdentifierPart(StringBuilder fingerprint) {
+        if (fingerprint.length() == 0) {
+            return false;
+        }
+        char previous = fingerprint.charAt(fingerprint.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '"';
+    }
+
+}
@@ -0,0 +1,37 @@
+package cz.foresttech.database;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of executing a statement, until its result is available.
+ */
+@Name("cz.foresttech.database.StatementExecute")
+@Label("Statement Execute")
+@Category("ForestDatabase")
+@Description("Execution of a SQL statement, without reading its rows")
+final class StatementExecuteEvent extends Event {
+
+    @Label("Database")
+    String database;
+
+    @Label("Entity")
+    Class<?> entity;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("SQL Fingerprint")
+    String fingerprint;
+
+    @Label("Rows")
+    @Description("Rows written by a batch, rows of a query are reported by the row mapping event")
+    long rows;
+
+    @Label("Failed")
+    boolean failed;
+
+}
@@ -0,0 +1,45 @@
+package cz.foresttech.database;
+
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds query variables to the parameters of prepared statements, the same way for every database implementation.
+ */
+final class StatementParameters {
+
+    private StatementParameters() {
+    }
+
+    /**
+     * Binds the variables to the parameters of a prepared statement.
+     *
+     * @param pState    the statement to be bound.
+     * @param variables the values, in the order of the statement parameters.
+     */
+    static void bind(final PreparedStatement pState, final Object... variables) throws SQLException {
+        for (int i = 1; i <= variables.length; ++i) {
+            Object obj = variables[i - 1];
+            if (obj instanceof Blob) {
+                pState.setBlob(i, (Blob) obj);
+            } else if (obj instanceof InputStream) {
+                pState.setBinaryStream(i, (InputStream) obj);
+            } else if (obj instanceof byte[]) {
+                pState.setBytes(i, (byte[]) obj);
+            } else if (obj instanceof Boolean) {
+                pState.setBoolean(i, (boolean) obj);
+            } else if (obj instanceof Integer) {
+                pState.setInt(i, (int) obj);
+            } else if (obj instanceof String) {
+                pState.setString(i, (String) obj);
+            } else if (obj instanceof String[]) {
+                pState.setArray(i, pState.getConnection().createArrayOf("text", (String[]) obj));
+            } else {
+                pState.setObject(i, obj);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,234 @@
+package cz.foresttech.database;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Transaction of a single database, started by {@link DatabaseAPI#inTransaction(String, java.util.function.Consumer)}.
+ * <p>
+ * All statements are executed on one connection and committed at once when the transaction ends. A failing statement
+ * throws a {@link TransactionException}, which ends the work and rolls the transaction back. The transaction is
+ * bound to the thread which started it, so it also covers synchronous {@link DatabaseAPI} calls made by the thread
+ * on the same database, but not asynchronous ones.
+ */
+public final class Transaction {
+
+    /**
+     * Isolation level of a transaction.
+     */
+    public enum Isolation {
+        /**
+         * Every statement sees the data committed before it started. The PostgreSQL default.
+         */
+        READ_COMMITTED(Connection.TRANSACTION_READ_COMMITTED),
+        /**
+         * All statements see the data committed before the first of them started.
+         */
+        REPEATABLE_READ(Connection.TRANSACTION_REPEATABLE_READ),
+        /**
+         * The transaction behaves as if no other transaction ran concurrently. Conflicting transactions fail
+         * on commit and have to be retried.
+         */
+        SERIALIZABLE(Connection.TRANSACTION_SERIALIZABLE);
+
+        private final int level;
+
+        Isolation(int level) {
+            this.level = level;
+        }
+
+        /**
+         * @return the JDBC isolation level.
+         */
+        int getLevel() {
+            return level;
+        }
+    }
+
+    private final DatabaseAPI databaseAPI;
+    private final String database;
+    private final HikariDatabase target;
+    private final Transaction previous;
+    private final Thread thread;
+    private final List<Object> writtenObjects;
+    private final Set<Class<?>> writtenClasses;
+    private boolean rollbackOnly;
+    private boolean active;
+
+    Transaction(DatabaseAPI databaseAPI, String database, HikariDatabase target, Transaction previous) {
+        this.databaseAPI = databaseAPI;
+        this.database = database;
+        this.target = target;
+        this.previous = previous;
+        this.thread = Thread.currentThread();
+        this.writtenObjects = new ArrayList<>();
+        this.writtenClasses = new HashSet<>();
+        this.active = true;
+    }
+
+    /**
+     * Inserts or updates an object as a part of the transaction.
+     *
+     * @param object the object to be inserted or updated.
+     * @see DatabaseAPI#insertOrUpdate(String, Object)
+     */
+    public <T> void insertOrUpdate(T object) {
+        checkActive();
+        databaseAPI.insertOrUpdate(database, object);
+    }
+
+    /**
+     * Inserts or updates multiple objects as a part of the transaction.
+     *
+     * @param objects the objects to be inserted or updated.
+     * @see DatabaseAPI#insertOrUpdateAll(String, Collection)
+     */
+    public <T> void insertOrUpdateAll(Collection<T> objects) {
+        checkActive();
+        databaseAPI.insertOrUpdateAll(database, objects);
+    }
+
+    /**
+     * Deletes an object as a part of the transaction.
+     *
+     * @param object the object to be deleted.
+     * @see DatabaseAPI#delete(String, Object)
+     */
+    public <T> void delete(T object) {
+        checkActive();
+        databaseAPI.delete(database, object);
+    }
+
+    /**
+     * Finds a record by its primary key. The entity cache is bypassed, so the record is read by the transaction.
+     *
+     * @param clazz    the class of the record.
+     * @param keyParts the primary key values, in the order of the key columns.
+     * @return the found object, or null if there is none.
+     * @see DatabaseAPI#findById(String, Class, Object...)
+     */
+    public <T> T findById(Class<T> clazz, Object... keyParts) {
+        checkActive();
+        return databaseAPI.findById(database, clazz, keyParts);
+    }
+
+    /**
+     * Finds records by their primary keys. The entity cache is bypassed, so the records are read by the transaction.
+     *
+     * @param clazz the class of the records.
+     * @param keys  the primary keys, composite keys as {@code Object[]} in the order of the key columns.
+     * @return a list of found objects.
+     * @see DatabaseAPI#findAllByIds(String, Class, Collection)
+     */
+    public <T> List<T> findAllByIds(Class<T> clazz, Collection<?> keys) {
+        checkActive();
+        return databaseAPI.findAllByIds(database, clazz, keys);
+    }
+
+    /**
+     * Finds all records of a class.
+     *
+     * @param clazz the class of the records.
+     * @return a list of found objects.
+     * @see DatabaseAPI#findAll(String, Class)
+     */
+    public <T> List<T> findAll(Class<T> clazz) {
+        checkActive();
+        return databaseAPI.findAll(database, clazz);
+    }
+
+    /**
+     * Finds records of a class using a custom query, e.g. one locking the rows using {@code FOR UPDATE}.
+     *
+     * @param clazz       the class of the records.
+     * @param customQuery the query.
+     * @return a list of found objects.
+     * @see DatabaseAPI#findAll(String, Class, String)
+     */
+    public <T> List<T> findAll(Class<T> clazz, String customQuery) {
+        checkActive();
+        return databaseAPI.findAll(database, clazz, customQuery);
+    }
+
+    /**
+     * Executes a raw statement as a part of the transaction.
+     *
+     * @param query     the statement.
+     * @param variables the statement parameters.
+     * @return the returned rows.
+     */
+    public List<DBRow> query(String query, Object... variables) {
+        checkActive();
+        return target.query(query, variables);
+    }
+
+    /**
+     * Marks the transaction to be rolled back instead of committed once the work ends, e.g. when a trade
+     * turns out to be invalid.
+     */
+    public void setRollbackOnly() {
+        this.rollbackOnly = true;
+    }
+
+    /**
+     * @return true if the transaction will be rolled back.
+     */
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    /**
+     * @return the name of the database.
+     */
+    public String getDatabase() {
+        return database;
+    }
+
+    private void checkActive() {
+        if (!active) {
+            throw new IllegalStateException("The transaction has already ended");
+        }
+        if (Thread.currentThread() != thread) {
+            throw new IllegalStateException("The transaction can only be used by the thread which started it");
+        }
+    }
+
+    void end() {
+        this.active = false;
+    }
+
+    HikariDatabase getTarget() {
+        return target;
+    }
+
+    Transaction getPrevious() {
+        return previous;
+    }
+
+    /**
+     * Remembers an object written by the transaction, so its cached state can be dropped once the transaction ends.
+     */
+    void addWrittenObject(Object object) {
+        writtenObjects.add(object);
+    }
+
+    /**
+     * Remembers a class whose records were written in bulk by the transaction.
+     */
+    void addWrittenClass(Class<?> clazz) {
+        writtenClasses.add(clazz);
+    }
+
+    List<Object> getWrittenObjects() {
+        return writtenObjects;
+    }
+
+    Set<Class<?>> getWrittenClasses() {
+        return writtenClasses;
+    }
+
+}
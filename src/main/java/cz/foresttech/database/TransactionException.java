@@ -0,0 +1,12 @@
+package cz.foresttech.database;
+
+/**
+ * Thrown when a statement executed in a {@link Transaction} fails. The transaction is rolled back afterwards.
+ */
+public class TransactionException extends RuntimeException {
+
+    public TransactionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
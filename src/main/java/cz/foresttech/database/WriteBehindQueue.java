@@ -0,0 +1,181 @@
+package cz.foresttech.database;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects asynchronous entity writes and flushes them in batches.
+ * Pending writes are keyed by database, entity class and primary key, so an entity saved multiple times
+ * between two flushes is written only once, with its latest state.
+ * Rows being written by a flush are tracked as in flight, so a synchronous write or delete of the same row
+ * can wait for the flush and a failed flush does not queue a row again once it has been superseded.
+ */
+class WriteBehindQueue {
+
+    private final DatabaseAPI databaseAPI;
+    private final int maxQueueSize;
+    private final Map<WriteKey, Object> pending;
+    // Rows being written by the current flush, mapped to whether they were superseded meanwhile. Guarded by itself.
+    private final Map<WriteKey, Boolean> inFlight;
+    private final AtomicBoolean flushScheduled;
+    private final BukkitTask flushTask;
+
+    WriteBehindQueue(DatabaseAPI databaseAPI, JavaPlugin javaPlugin, long flushIntervalTicks, int maxQueueSize) {
+        this.databaseAPI = databaseAPI;
+        this.maxQueueSize = maxQueueSize;
+        this.pending = new ConcurrentHashMap<>();
+        this.inFlight = new HashMap<>();
+        this.flushScheduled = new AtomicBoolean();
+        // Without a plugin there is nothing to schedule on, the queue is flushed by size and explicitly only
+        this.flushTask = javaPlugin == null ? null : Bukkit.getScheduler().runTaskTimerAsynchronously(javaPlugin,
+                this::flush, flushIntervalTicks, flushIntervalTicks);
+    }
+
+    /**
+     * Queues the object to be written, replacing any pending write of the same row.
+     *
+     * @param database the name of the database.
+     * @param object   the object to be written.
+     * @return false if the object has no primary key and cannot be queued.
+     */
+    boolean enqueue(String database, Object object) {
+        WriteKey key = createKey(database, object);
+        if (key == null) {
+            return false;
+        }
+
+        pending.put(key, object);
+        if (pending.size() >= maxQueueSize && flushScheduled.compareAndSet(false, true)) {
+            databaseAPI.getExecutor().execute(this::flush);
+        }
+        return true;
+    }
+
+    /**
+     * Drops a pending write of the object, e.g. because it is being deleted or written synchronously.
+     * If the row is being written by a flush right now, the flush is told not to queue it again on failure
+     * and, if requested, the call waits until the flush of the row is finished.
+     *
+     * @param database the name of the database.
+     * @param object   the object whose write is to be dropped.
+     * @param await    whether to wait for a flush writing the row.
+     */
+    void discard(String database, Object object, boolean await) {
+        WriteKey key = createKey(database, object);
+        if (key == null) {
+            return;
+        }
+
+        synchronized (inFlight) {
+            pending.remove(key);
+            if (!inFlight.containsKey(key)) {
+                return;
+            }
+
+            inFlight.put(key, Boolean.TRUE);
+            while (await && inFlight.containsKey(key)) {
+                try {
+                    inFlight.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all pending objects, grouped by database and class. Writes of a failed batch are queued again,
+     * unless a newer state of the same row has been queued or the row has been written or deleted
+     * synchronously in the meantime.
+     */
+    synchronized void flush() {
+        flushScheduled.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Map<WriteKey, Object> drained = new LinkedHashMap<>();
+        synchronized (inFlight) {
+            for (WriteKey key : new ArrayList<>(pending.keySet())) {
+                Object object = pending.remove(key);
+                if (object != null) {
+                    drained.put(key, object);
+                    inFlight.put(key, Boolean.FALSE);
+                }
+            }
+        }
+
+        Map<String, Map<Class<?>, List<Map.Entry<WriteKey, Object>>>> grouped = new LinkedHashMap<>();
+        for (Map.Entry<WriteKey, Object> entry : drained.entrySet()) {
+            grouped.computeIfAbsent(entry.getKey().database(), database -> new LinkedHashMap<>())
+                    .computeIfAbsent(entry.getKey().type(), type -> new ArrayList<>())
+                    .add(entry);
+        }
+
+        grouped.forEach((database, byClass) -> byClass.forEach((type, entries) -> {
+            List<Object> objects = new ArrayList<>(entries.size());
+            entries.forEach(entry -> objects.add(entry.getValue()));
+
+            boolean written = false;
+            try {
+                written = databaseAPI.insertOrUpdateBatch(database, (Class<Object>) type, objects);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                land(entries, written);
+            }
+        }));
+    }
+
+    /**
+     * Ends the flight of written rows, queueing the failed ones again unless they were superseded,
+     * and wakes up threads waiting for them.
+     */
+    private void land(List<Map.Entry<WriteKey, Object>> entries, boolean written) {
+        synchronized (inFlight) {
+            for (Map.Entry<WriteKey, Object> entry : entries) {
+                Boolean superseded = inFlight.remove(entry.getKey());
+                if (!written && Boolean.FALSE.equals(superseded)) {
+                    pending.putIfAbsent(entry.getKey(), entry.getValue());
+                }
+            }
+            inFlight.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the periodic flushing and writes everything still pending.
+     */
+    void close() {
+        if (flushTask != null) {
+            flushTask.cancel();
+        }
+        flush();
+    }
+
+    private WriteKey createKey(String database, Object object) {
+        Class<?> type = object.getClass();
+        DatabaseEntityConvertor convertor = databaseAPI.getDatabaseEntityConvertor();
+        if (convertor.getMetadata(type).getPrimaryKeys().isEmpty()) {
+            return null;
+        }
+
+        Object[] key = convertor.primaryKeyParameters(type, convertor.getPrimaryKey(object));
+        return new WriteKey(database.toUpperCase(), type, Arrays.asList(key));
+    }
+
+    private record WriteKey(String database, Class<?> type, List<Object> key) {
+    }
+
+}
@@ -0,0 +1,334 @@
+package cz.foresttech.database.apt;
+
+import cz.foresttech.database.annotation.Column;
+import cz.foresttech.database.annotation.DatabaseEntity;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Annotation processor generating an {@link cz.foresttech.database.EntityMapper} for every {@link DatabaseEntity}.
+ * The processor is not registered as a service, it has to be enabled explicitly in the compiler configuration.
+ * <p>
+ * Only fields visible from the entity package and not final are accessed by the generated code, getters and setters
+ * are never called, as they may contain logic the runtime field access does not run. Other columns are listed
+ * by {@link cz.foresttech.database.EntityMapper#getRuntimeColumnNames()} and keep using runtime field access.
+ */
+@SupportedAnnotationTypes("cz.foresttech.database.annotation.DatabaseEntity")
+public class EntityMapperProcessor extends AbstractProcessor {
+
+    private static final List<String> PRIMITIVE_TYPES = List.of("int", "long", "double", "boolean");
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement entity : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(DatabaseEntity.class))) {
+            try {
+                generateMapper(entity);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Failed to generate entity mapper: " + e.getMessage(), entity);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Generates the mapper source file for a single entity.
+     *
+     * @param entity the entity type.
+     */
+    private void generateMapper(TypeElement entity) throws IOException {
+        if (entity.getKind() != ElementKind.CLASS
+                || entity.getModifiers().contains(Modifier.ABSTRACT)
+                || entity.getModifiers().contains(Modifier.PRIVATE)
+                || entity.getNestingKind().isNested() && !entity.getModifiers().contains(Modifier.STATIC)
+                || entity.getNestingKind() == NestingKind.LOCAL
+                || entity.getNestingKind() == NestingKind.ANONYMOUS) {
+            note(entity, "entity is not a top-level or static nested concrete class");
+            return;
+        }
+
+        if (!hasAccessibleConstructor(entity)) {
+            note(entity, "entity does not have an accessible no-argument constructor");
+            return;
+        }
+
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(entity);
+        List<MappedColumn> columns = new ArrayList<>();
+        List<String> runtimeColumns = new ArrayList<>();
+        for (VariableElement field : getColumnFields(entity)) {
+            MappedColumn column = mapColumn(packageElement, field);
+            if (column == null) {
+                runtimeColumns.add(getColumnName(field));
+                continue;
+            }
+            columns.add(column);
+        }
+
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(entity).toString();
+        String mapperName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                .replace('$', '_') + "Mapper";
+        String entityName = entity.getQualifiedName().toString();
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                packageName.isEmpty() ? mapperName : packageName + "." + mapperName, entity);
+        try (Writer writer = file.openWriter()) {
+            writer.write(render(packageName, mapperName, entityName, getTableName(entity), columns, runtimeColumns));
+        }
+    }
+
+    private String render(String packageName, String mapperName, String entityName, String tableName,
+                          List<MappedColumn> columns, List<String> runtimeColumns) {
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+
+        source.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n");
+        source.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        source.append("public final class ").append(mapperName)
+                .append(" implements cz.foresttech.database.EntityMapper<").append(entityName).append("> {\n\n");
+
+        source.append("    private static final String TABLE_NAME = ").append(literal(tableName)).append(";\n");
+        source.append("    private static final String[] COLUMN_NAMES = {");
+        for (int i = 0; i < columns.size(); i++) {
+            source.append(i == 0 ? "" : ", ").append(literal(columns.get(i).name));
+        }
+        source.append("};\n");
+        source.append("    private static final String[] RUNTIME_COLUMN_NAMES = {");
+        for (int i = 0; i < runtimeColumns.size(); i++) {
+            source.append(i == 0 ? "" : ", ").append(literal(runtimeColumns.get(i)));
+        }
+        source.append("};\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public String getTableName() {\n");
+        source.append("        return TABLE_NAME;\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public String[] getColumnNames() {\n");
+        source.append("        return COLUMN_NAMES.clone();\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public String[] getRuntimeColumnNames() {\n");
+        source.append("        return RUNTIME_COLUMN_NAMES.clone();\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public ").append(entityName).append(" newInstance() {\n");
+        source.append("        return new ").append(entityName).append("();\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public Object get(").append(entityName).append(" entity, int column) {\n");
+        source.append("        switch (column) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            source.append("            case ").append(i).append(":\n");
+            source.append("                return entity.").append(columns.get(i).read).append(";\n");
+        }
+        source.append("            default:\n");
+        source.append("                throw new IndexOutOfBoundsException(column);\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public void set(").append(entityName).append(" entity, int column, Object value) {\n");
+        source.append("        switch (column) {\n");
+        for (int i = 0; i < columns.size(); i++) {
+            MappedColumn column = columns.get(i);
+            String cast = "(" + column.castType + ") value";
+            source.append("            case ").append(i).append(":\n");
+            source.append("                entity.").append(String.format(column.write, cast)).append(";\n");
+            source.append("                return;\n");
+        }
+        source.append("            default:\n");
+        source.append("                throw new IndexOutOfBoundsException(column);\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+
+        for (String primitive : PRIMITIVE_TYPES) {
+            renderPrimitiveAccessors(source, entityName, primitive, columns);
+        }
+
+        source.append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * Renders the typed getter and setter of the columns of one primitive type, so their values are not boxed.
+     * Nothing is rendered if the entity has no such column.
+     */
+    private void renderPrimitiveAccessors(StringBuilder source, String entityName, String primitive,
+                                          List<MappedColumn> columns) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (primitive.equals(columns.get(i).primitiveType)) {
+                indexes.add(i);
+            }
+        }
+        if (indexes.isEmpty()) {
+            return;
+        }
+
+        String suffix = Character.toUpperCase(primitive.charAt(0)) + primitive.substring(1);
+        String boxed = primitive.equals("int") ? "Integer" : suffix;
+
+        source.append("    @Override\n");
+        source.append("    public ").append(primitive).append(" get").append(suffix).append("(")
+                .append(entityName).append(" entity, int column) {\n");
+        source.append("        switch (column) {\n");
+        for (int index : indexes) {
+            source.append("            case ").append(index).append(":\n");
+            source.append("                return entity.").append(columns.get(index).read).append(";\n");
+        }
+        source.append("            default:\n");
+        source.append("                return (").append(boxed).append(") get(entity, column);\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public void set").append(suffix).append("(").append(entityName).append(" entity, int column, ")
+                .append(primitive).append(" value) {\n");
+        source.append("        switch (column) {\n");
+        for (int index : indexes) {
+            source.append("            case ").append(index).append(":\n");
+            source.append("                entity.").append(String.format(columns.get(index).write, "value")).append(";\n");
+            source.append("                return;\n");
+        }
+        source.append("            default:\n");
+        source.append("                set(entity, column, value);\n");
+        source.append("        }\n");
+        source.append("    }\n\n");
+    }
+
+    /**
+     * Resolves how the generated code accesses a column field.
+     *
+     * @return the access description, or null if the field cannot be read and written directly from the entity package.
+     */
+    private MappedColumn mapColumn(PackageElement packageElement, VariableElement field) {
+        if (!isAccessible(field, packageElement) || field.getModifiers().contains(Modifier.FINAL)) {
+            return null;
+        }
+
+        TypeMirror type = processingEnv.getTypeUtils().erasure(field.asType());
+        String castType = type.getKind().isPrimitive()
+                ? processingEnv.getTypeUtils().boxedClass((javax.lang.model.type.PrimitiveType) type).getQualifiedName().toString()
+                : type.toString();
+
+        String fieldName = field.getSimpleName().toString();
+        String primitiveType = type.getKind().isPrimitive() ? type.toString() : null;
+        return new MappedColumn(getColumnName(field), castType, primitiveType, fieldName, fieldName + " = %s");
+    }
+
+    private static String getColumnName(VariableElement field) {
+        Column column = field.getAnnotation(Column.class);
+        return column.key().isEmpty() ? camelCaseToSnakeCase(field.getSimpleName().toString()) : column.key();
+    }
+
+    /**
+     * Collects all non-static {@link Column} fields, superclass fields first.
+     */
+    private List<VariableElement> getColumnFields(TypeElement type) {
+        List<VariableElement> fields = new ArrayList<>();
+
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED) {
+            fields.addAll(getColumnFields((TypeElement) ((DeclaredType) superclass).asElement()));
+        }
+
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC) || field.getAnnotation(Column.class) == null) {
+                continue;
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    private boolean hasAccessibleConstructor(TypeElement entity) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(entity);
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                return isAccessible(constructor, packageElement);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a member can be accessed by a class in the given package which is not a subclass.
+     */
+    private boolean isAccessible(Element member, PackageElement packageElement) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return processingEnv.getElementUtils().getPackageOf(member).equals(packageElement);
+    }
+
+    private String getTableName(TypeElement entity) {
+        DatabaseEntity databaseEntity = entity.getAnnotation(DatabaseEntity.class);
+        if (databaseEntity != null && !databaseEntity.table().isEmpty()) {
+            return databaseEntity.table();
+        }
+        return camelCaseToSnakeCase(entity.getSimpleName().toString());
+    }
+
+    private void note(TypeElement entity, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "Skipping entity mapper generation, " + reason, entity);
+    }
+
+    private static String camelCaseToSnakeCase(String input) {
+        return input.replaceAll("([a-z])([A-Z]+)", "$1_$2").toLowerCase();
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static final class MappedColumn {
+
+        private final String name;
+        private final String castType;
+        private final String primitiveType;
+        private final String read;
+        private final String write;
+
+        private MappedColumn(String name, String castType, String primitiveType, String read, String write) {
+            this.name = name;
+            this.castType = castType;
+            this.primitiveType = primitiveType;
+            this.read = read;
+            this.write = write;
+        }
+
+    }
+
+}
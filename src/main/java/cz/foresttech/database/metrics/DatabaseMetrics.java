@@ -0,0 +1,61 @@
+package cz.foresttech.database.metrics;
+
+/**
+ * Recording side of the {@link MetricsRegistry} bound to a single database.
+ * Databases receive it when they are registered in the API and record every executed statement.
+ */
+public final class DatabaseMetrics {
+
+    private final MetricsRegistry registry;
+    private final String database;
+    private final PoolMetrics poolMetrics;
+
+    DatabaseMetrics(MetricsRegistry registry, String database, PoolMetrics poolMetrics) {
+        this.registry = registry;
+        this.database = database;
+        this.poolMetrics = poolMetrics;
+    }
+
+    /**
+     * Resolves the key of a statement executed by the current thread, using the entity and operation
+     * of the surrounding {@link MetricsRegistry#enter(Class, Operation)} scope.
+     * Statements outside of any scope are recorded as {@link Operation#CUSTOM}.
+     *
+     * @return the key the statement shall be recorded under.
+     */
+    public MetricKey resolve() {
+        MetricsRegistry.Context context = registry.currentContext();
+        return context == null
+                ? new MetricKey(database, null, Operation.CUSTOM)
+                : new MetricKey(database, context.entity(), context.operation());
+    }
+
+    /**
+     * Records an executed statement.
+     *
+     * @param key           the key returned by {@link #resolve()} when the statement started.
+     * @param durationNanos the duration of the statement.
+     * @param rows          the number of rows returned or written.
+     * @param failed        true if the statement failed.
+     */
+    public void record(MetricKey key, long durationNanos, long rows, boolean failed) {
+        registry.getOrCreate(key).record(durationNanos, rows, failed);
+    }
+
+    /**
+     * Records the time spent waiting for a pooled connection.
+     *
+     * @param nanos the waiting time.
+     */
+    public void recordConnectionAcquired(long nanos) {
+        poolMetrics.recordAcquired(nanos);
+    }
+
+    /**
+     * Records a connection request which timed out.
+     */
+    public void recordConnectionTimeout() {
+        poolMetrics.recordTimeout();
+    }
+
+}
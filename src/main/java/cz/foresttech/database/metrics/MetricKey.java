@@ -0,0 +1,11 @@
+package cz.foresttech.database.metrics;
+
+/**
+ * Identifies the operation metrics of a single database, entity class and operation.
+ *
+ * @param database  the name of the database, upper case as registered in the API.
+ * @param entity    the entity class, or null for statements not related to an entity.
+ * @param operation the kind of the operation.
+ */
+public record MetricKey(String database, Class<?> entity, Operation operation) {
+}
@@ -0,0 +1,114 @@
+package cz.foresttech.database.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects statement and connection pool metrics of all databases registered in the API.
+ * Statements are broken down by database, entity class and {@link Operation}. The API marks the entity
+ * and operation of its calls using {@link #enter(Class, Operation)} scopes.
+ */
+public final class MetricsRegistry {
+
+    private final Map<MetricKey, OperationMetrics> operationMetrics;
+    private final Map<String, PoolMetrics> poolMetrics;
+    private final ThreadLocal<Context> context;
+
+    public MetricsRegistry() {
+        this.operationMetrics = new ConcurrentHashMap<>();
+        this.poolMetrics = new ConcurrentHashMap<>();
+        this.context = new ThreadLocal<>();
+    }
+
+    /**
+     * Creates the recorder of a single database.
+     *
+     * @param database the name of the database.
+     * @return the recorder passed to the database.
+     */
+    public DatabaseMetrics forDatabase(String database) {
+        String name = database.toUpperCase();
+        return new DatabaseMetrics(this, name, poolMetrics.computeIfAbsent(name, key -> new PoolMetrics()));
+    }
+
+    /**
+     * Marks statements executed by the current thread until the scope is closed as belonging to the given
+     * entity and operation. Scopes can be nested, the innermost one applies.
+     *
+     * @param entity    the entity class, may be null.
+     * @param operation the operation.
+     * @return the scope to be closed once the operation finishes.
+     */
+    public Scope enter(Class<?> entity, Operation operation) {
+        Context previous = context.get();
+        context.set(new Context(entity, operation));
+        return () -> {
+            if (previous == null) {
+                context.remove();
+            } else {
+                context.set(previous);
+            }
+        };
+    }
+
+    Context currentContext() {
+        return context.get();
+    }
+
+    OperationMetrics getOrCreate(MetricKey key) {
+        return operationMetrics.computeIfAbsent(key, k -> new OperationMetrics());
+    }
+
+    /**
+     * @return the statement metrics recorded so far, by database, entity class and operation.
+     */
+    public Map<MetricKey, OperationMetrics> getOperationMetrics() {
+        return Collections.unmodifiableMap(new HashMap<>(operationMetrics));
+    }
+
+    /**
+     * Retrieves the statement metrics of a single database, entity class and operation.
+     *
+     * @param database  the name of the database.
+     * @param entity    the entity class, or null for statements not related to an entity.
+     * @param operation the operation.
+     * @return the metrics, or null if no such statement has been recorded.
+     */
+    public OperationMetrics getOperationMetrics(String database, Class<?> entity, Operation operation) {
+        return operationMetrics.get(new MetricKey(database.toUpperCase(), entity, operation));
+    }
+
+    /**
+     * Retrieves the connection pool metrics of a single database.
+     *
+     * @param database the name of the database.
+     * @return the metrics, or null if the database is not registered.
+     */
+    public PoolMetrics getPoolMetrics(String database) {
+        return poolMetrics.get(database.toUpperCase());
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        operationMetrics.values().forEach(OperationMetrics::reset);
+        poolMetrics.values().forEach(PoolMetrics::reset);
+    }
+
+    /**
+     * Scope of statements executed for a single entity and operation.
+     */
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+
+    }
+
+    record Context(Class<?> entity, Operation operation) {
+    }
+
+}
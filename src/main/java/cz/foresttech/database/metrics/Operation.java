@@ -0,0 +1,29 @@
+package cz.foresttech.database.metrics;
+
+/**
+ * Kind of a database operation, used to break down recorded metrics.
+ */
+public enum Operation {
+
+    /**
+     * Entity lookups, e.g. findAll, findById or stream.
+     */
+    SELECT,
+    /**
+     * Entity inserts and updates, including batched and bulk loads.
+     */
+    UPSERT,
+    /**
+     * Entity deletes.
+     */
+    DELETE,
+    /**
+     * Schema changes, e.g. table creation.
+     */
+    DDL,
+    /**
+     * Custom queries and statements executed directly on a database.
+     */
+    CUSTOM
+
+}
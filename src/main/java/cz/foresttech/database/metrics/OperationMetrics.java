@@ -0,0 +1,62 @@
+package cz.foresttech.database.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, row and error statistics of a single database, entity class and operation.
+ */
+public final class OperationMetrics {
+
+    private final LatencyHistogram latency;
+    private final LongAdder rows;
+    private final LongAdder errors;
+
+    OperationMetrics() {
+        this.latency = new LatencyHistogram();
+        this.rows = new LongAdder();
+        this.errors = new LongAdder();
+    }
+
+    void record(long durationNanos, long rowCount, boolean failed) {
+        latency.record(durationNanos);
+        rows.add(rowCount);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * @return the histogram of statement durations in nanoseconds.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the number of executed statements.
+     */
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    /**
+     * @return the number of rows returned or written by the statements.
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * @return the number of failed statements.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    void reset() {
+        latency.reset();
+        rows.reset();
+        errors.reset();
+    }
+
+}
@@ -0,0 +1,45 @@
+package cz.foresttech.database.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pool statistics of a single database.
+ */
+public final class PoolMetrics {
+
+    private final LatencyHistogram acquireTime;
+    private final LongAdder timeouts;
+
+    PoolMetrics() {
+        this.acquireTime = new LatencyHistogram();
+        this.timeouts = new LongAdder();
+    }
+
+    /**
+     * @return the histogram of times spent waiting for a pooled connection, in nanoseconds.
+     */
+    public LatencyHistogram getAcquireTime() {
+        return acquireTime;
+    }
+
+    /**
+     * @return the number of connection requests which timed out.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    void recordAcquired(long nanos) {
+        acquireTime.record(nanos);
+    }
+
+    void recordTimeout() {
+        timeouts.increment();
+    }
+
+    void reset() {
+        acquireTime.reset();
+        timeouts.reset();
+    }
+
+}
@@ -0,0 +1,12 @@
+package cz.foresttech.database.metrics;
+
+/**
+ * Current state of a connection pool.
+ *
+ * @param active  the number of connections in use.
+ * @param idle    the number of connections available in the pool.
+ * @param total   the number of open connections.
+ * @param pending the number of threads waiting for a connection.
+ */
+public record PoolStatsSnapshot(int active, int idle, int total, int pending) {
+}
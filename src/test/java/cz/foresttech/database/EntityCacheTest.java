@@ -0,0 +1,176 @@
+package cz.foresttech.database;
+
+import cz.foresttech.database.annotation.Column;
+import cz.foresttech.database.annotation.DatabaseEntity;
+import cz.foresttech.database.annotation.PrimaryKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntityCacheTest {
+
+    private DatabaseAPI databaseAPI;
+    private FakeDatabase database;
+
+    @BeforeEach
+    void setUp() {
+        databaseAPI = new DatabaseAPI(null, Runnable::run);
+        databaseAPI.setup();
+        database = new FakeDatabase();
+        databaseAPI.addDatabase("db", database);
+        databaseAPI.enableCache(Profile.class, 100, null, null, true);
+        database.rows = query -> query.startsWith("SELECT") ? List.of(FakeDatabase.row("id", 1, "name", "stored")) : List.of();
+    }
+
+    @Test
+    void servesRepeatedLookupsFromCache() {
+        Profile first = databaseAPI.findById("db", Profile.class, 1);
+        Profile second = databaseAPI.findById("db", Profile.class, 1L);
+
+        assertEquals("stored", first.name);
+        assertSame(first, second);
+        assertEquals(1, database.count("SELECT"));
+    }
+
+    @Test
+    void writeReplacesCachedEntity() {
+        databaseAPI.findById("db", Profile.class, 1);
+        Profile written = new Profile(1, "written");
+
+        databaseAPI.insertOrUpdate("db", written);
+
+        assertSame(written, databaseAPI.findById("db", Profile.class, 1));
+        assertEquals(1, database.count("SELECT"));
+    }
+
+    @Test
+    void failedWriteInvalidatesCachedEntity() {
+        Profile loaded = databaseAPI.findById("db", Profile.class, 1);
+        loaded.name = "changed";
+        database.failing = query -> query.startsWith("INSERT");
+
+        databaseAPI.insertOrUpdate("db", loaded);
+
+        assertEquals("stored", databaseAPI.findById("db", Profile.class, 1).name);
+        assertEquals(2, database.count("SELECT"));
+    }
+
+    @Test
+    void deleteInvalidatesCachedEntity() {
+        Profile loaded = databaseAPI.findById("db", Profile.class, 1);
+
+        databaseAPI.delete("db", loaded);
+        database.rows = query -> List.of();
+
+        assertNull(databaseAPI.findById("db", Profile.class, 1));
+        assertEquals(2, database.count("SELECT"));
+    }
+
+    @Test
+    void cachesMissingKeys() {
+        database.rows = query -> List.of();
+
+        assertNull(databaseAPI.findById("db", Profile.class, 2));
+        assertNull(databaseAPI.findById("db", Profile.class, 2));
+
+        assertEquals(1, database.count("SELECT"));
+    }
+
+    @Test
+    void failedQueryIsNotCachedAsMissing() {
+        database.failing = query -> query.startsWith("SELECT");
+        assertNull(databaseAPI.findById("db", Profile.class, 1));
+
+        database.failing = query -> false;
+
+        assertNotNull(databaseAPI.findById("db", Profile.class, 1));
+        assertEquals(2, database.count("SELECT"));
+    }
+
+    @Test
+    void readRacingWithWriteDoesNotCacheOldRow() {
+        Profile written = new Profile(1, "written");
+        database.beforeQuery = query -> {
+            // The write completes while the read is waiting for its old row
+            if (query.startsWith("SELECT") && database.count("INSERT") == 0) {
+                databaseAPI.insertOrUpdate("db", written);
+            }
+        };
+
+        assertEquals("stored", databaseAPI.findById("db", Profile.class, 1).name);
+
+        assertSame(written, databaseAPI.findById("db", Profile.class, 1));
+        assertEquals(1, database.count("SELECT"));
+    }
+
+    @Test
+    void readRacingWithDeleteDoesNotCacheDeletedRow() {
+        database.beforeQuery = query -> {
+            if (query.startsWith("SELECT") && database.count("DELETE") == 0) {
+                databaseAPI.delete("db", new Profile(1, "stored"));
+            }
+        };
+
+        databaseAPI.findById("db", Profile.class, 1);
+        database.rows = query -> List.of();
+
+        assertNull(databaseAPI.findById("db", Profile.class, 1));
+        assertEquals(2, database.count("SELECT"));
+    }
+
+    @Test
+    void putIfUnchangedRejectsStaleGeneration() {
+        EntityCache cache = new EntityCache(10, null, null, true);
+        List<Object> key = List.of("1");
+
+        long generation = cache.generation("db", key);
+        cache.invalidate("db", key);
+
+        assertFalse(cache.putIfUnchanged("db", key, "old", generation));
+        assertNull(cache.get("db", key));
+        assertTrue(cache.putIfUnchanged("db", key, "new", cache.generation("db", key)));
+        assertEquals("new", cache.get("db", key).getValue());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedKey() {
+        EntityCache cache = new EntityCache(2, null, null, true);
+        cache.put("db", List.of("1"), "first");
+        cache.put("db", List.of("2"), "second");
+        cache.get("db", List.of("1"));
+
+        cache.put("db", List.of("3"), "third");
+
+        assertNotNull(cache.get("db", List.of("1")));
+        assertNull(cache.get("db", List.of("2")));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @DatabaseEntity
+    static class Profile {
+
+        @Column
+        @PrimaryKey
+        private int id;
+        @Column
+        private String name;
+
+        Profile() {
+        }
+
+        Profile(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+    }
+
+}
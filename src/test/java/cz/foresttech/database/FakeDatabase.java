@@ -0,0 +1,95 @@
+package cz.foresttech.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory {@link ForestDatabase} recording executed statements and answering them with prepared rows.
+ */
+class FakeDatabase implements ForestDatabase {
+
+    final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+    volatile Function<String, List<DBRow>> rows = query -> new ArrayList<>();
+    volatile Predicate<String> failing = query -> false;
+    volatile Consumer<String> beforeQuery = query -> {
+    };
+
+    /**
+     * Creates a row with the given column names and values.
+     *
+     * @param cells column names followed by their values.
+     * @return the row.
+     */
+    static DBRow row(Object... cells) {
+        DBRow row = new DBRow();
+        for (int i = 0; i < cells.length; i += 2) {
+            row.addCell((String) cells[i], cells[i + 1]);
+        }
+        return row;
+    }
+
+    /**
+     * @param prefix the beginning of the statements, e.g. "INSERT".
+     * @return the number of executed statements starting with the prefix.
+     */
+    int count(String prefix) {
+        synchronized (statements) {
+            return (int) statements.stream().filter(statement -> statement.startsWith(prefix)).count();
+        }
+    }
+
+    @Override
+    public void setup() {
+    }
+
+    @Override
+    public Connection getConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public ArrayList<DBRow> query(String query, Object... variables) {
+        try {
+            return execute(query, variables);
+        } catch (SQLException exception) {
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public <T> List<T> queryChecked(String query, ResultSetMapper<T> mapper, Object... variables) throws SQLException {
+        List<T> mapped = new ArrayList<>();
+        try (ResultSet result = DBRowResultSet.of(execute(query, variables))) {
+            mapper.prepare(result.getMetaData());
+            while (result.next()) {
+                T row = mapper.map(result);
+                if (row != null) {
+                    mapped.add(row);
+                }
+            }
+        }
+        return mapped;
+    }
+
+    private ArrayList<DBRow> execute(String query, Object... variables) throws SQLException {
+        statements.add(query + " " + Arrays.toString(variables));
+        beforeQuery.accept(query);
+        if (failing.test(query)) {
+            throw new SQLException("Statement failed: " + query);
+        }
+        return new ArrayList<>(rows.apply(query));
+    }
+
+}
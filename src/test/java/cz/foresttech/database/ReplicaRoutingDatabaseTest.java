@@ -0,0 +1,98 @@
+package cz.foresttech.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplicaRoutingDatabaseTest {
+
+    @Test
+    void plainSelectIsRead() {
+        assertTrue(ReplicaRoutingDatabase.isRead("SELECT * FROM player WHERE id = ?"));
+        assertTrue(ReplicaRoutingDatabase.isRead("  select count(*) from player"));
+        assertTrue(ReplicaRoutingDatabase.isRead("(SELECT id FROM a) UNION (SELECT id FROM b)"));
+    }
+
+    @Test
+    void writesAreNotReads() {
+        assertFalse(ReplicaRoutingDatabase.isRead("INSERT INTO player (id) VALUES (?)"));
+        assertFalse(ReplicaRoutingDatabase.isRead("UPDATE player SET name = ?"));
+        assertFalse(ReplicaRoutingDatabase.isRead("DELETE FROM player"));
+        assertFalse(ReplicaRoutingDatabase.isRead("WITH moved AS (DELETE FROM a RETURNING *) SELECT * FROM moved"));
+        assertFalse(ReplicaRoutingDatabase.isRead("CREATE TABLE player (id INT)"));
+    }
+
+    @Test
+    void lockingSelectIsNotRead() {
+        assertFalse(ReplicaRoutingDatabase.isRead("SELECT * FROM player WHERE id = ? FOR UPDATE"));
+        assertFalse(ReplicaRoutingDatabase.isRead("SELECT * FROM player FOR NO KEY UPDATE SKIP LOCKED"));
+        assertFalse(ReplicaRoutingDatabase.isRead("SELECT * FROM player for share"));
+    }
+
+    @Test
+    void writingSelectIsNotRead() {
+        assertFalse(ReplicaRoutingDatabase.isRead("SELECT nextval('player_id_seq')"));
+        assertFalse(ReplicaRoutingDatabase.isRead("SELECT setval('player_id_seq', 10)"));
+        assertFalse(ReplicaRoutingDatabase.isRead("SELECT pg_advisory_lock(?)"));
+        assertFalse(ReplicaRoutingDatabase.isRead("SELECT * INTO player_copy FROM player"));
+    }
+
+    @Test
+    void routesReadsToReplicasAndWritesToPrimary() {
+        FakeDatabase primary = new FakeDatabase();
+        FakeDatabase replica = new FakeDatabase();
+        ReplicaRoutingDatabase database = new ReplicaRoutingDatabase(primary, List.of(replica),
+                ReplicaRoutingDatabase.Strategy.ROUND_ROBIN);
+
+        database.query("SELECT * FROM player");
+        database.query("UPDATE player SET name = ?", "Steve");
+        database.query("SELECT nextval('player_id_seq')");
+
+        assertEquals(1, replica.statements.size());
+        assertEquals(2, primary.statements.size());
+    }
+
+    @Test
+    void usePrimaryScopeSendsReadsToPrimary() {
+        FakeDatabase primary = new FakeDatabase();
+        FakeDatabase replica = new FakeDatabase();
+        ReplicaRoutingDatabase database = new ReplicaRoutingDatabase(primary, List.of(replica),
+                ReplicaRoutingDatabase.Strategy.ROUND_ROBIN);
+
+        try (ReplicaRoutingDatabase.Scope scope = database.usePrimary()) {
+            try (ReplicaRoutingDatabase.Scope nested = database.usePrimary()) {
+                database.query("SELECT grant_reward(?)", 1);
+            }
+            database.query("SELECT * FROM player");
+        }
+        database.query("SELECT * FROM player");
+
+        assertEquals(2, primary.statements.size());
+        assertEquals(1, replica.statements.size());
+    }
+
+    @Test
+    void readYourWritesScopeSendsReadsAfterWriteToPrimary() {
+        FakeDatabase primary = new FakeDatabase();
+        FakeDatabase replica = new FakeDatabase();
+        ReplicaRoutingDatabase database = new ReplicaRoutingDatabase(primary, List.of(replica),
+                ReplicaRoutingDatabase.Strategy.ROUND_ROBIN);
+
+        try (ReplicaRoutingDatabase.Scope scope = database.readYourWrites("steve")) {
+            database.query("SELECT * FROM player");
+            database.query("UPDATE player SET name = ?", "Steve");
+            database.query("SELECT * FROM player");
+        }
+        try (ReplicaRoutingDatabase.Scope scope = database.readYourWrites("alex")) {
+            database.query("SELECT * FROM player");
+        }
+
+        assertEquals(2, primary.statements.size());
+        assertEquals(2, replica.statements.size());
+    }
+
+}
@@ -0,0 +1,166 @@
+package cz.foresttech.database;
+
+import cz.foresttech.database.annotation.Column;
+import cz.foresttech.database.annotation.DatabaseEntity;
+import cz.foresttech.database.annotation.PrimaryKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedDatabaseTest {
+
+    @Test
+    void shardDoesNotDependOnOrderOfShards() {
+        Map<String, FakeDatabase> shards = shards("a", "b", "c");
+        Map<String, FakeDatabase> reversed = new LinkedHashMap<>();
+        reversed.put("c", shards.get("c"));
+        reversed.put("b", shards.get("b"));
+        reversed.put("a", shards.get("a"));
+
+        ShardedDatabase database = new ShardedDatabase(shards);
+        ShardedDatabase reversedDatabase = new ShardedDatabase(reversed);
+
+        for (int key = 0; key < 1000; key++) {
+            assertSame(database.getShard(key), reversedDatabase.getShard(key));
+        }
+    }
+
+    @Test
+    void equalKeysOfDifferentTypesShareShard() {
+        ShardedDatabase database = new ShardedDatabase(shards("a", "b", "c"));
+
+        for (int key = 0; key < 1000; key++) {
+            assertSame(database.getShard(key), database.getShard((long) key));
+        }
+    }
+
+    @Test
+    void compositeKeysAreNotConcatenated() {
+        ShardedDatabase database = new ShardedDatabase(shards("a", "b", "c"));
+
+        int differing = 0;
+        for (int key = 0; key < 100; key++) {
+            if (database.getShard("1" + key, "2") != database.getShard("1", key + "2")) {
+                differing++;
+            }
+        }
+        assertTrue(differing > 0);
+    }
+
+    @Test
+    void addedShardTakesOnlyItsShareOfKeys() {
+        Map<String, FakeDatabase> shards = shards("a", "b", "c", "d");
+        ShardedDatabase grown = new ShardedDatabase(shards);
+        shards.remove("d");
+        ShardedDatabase database = new ShardedDatabase(shards);
+
+        int keys = 10_000;
+        int moved = 0;
+        for (int key = 0; key < keys; key++) {
+            ForestDatabase shard = grown.getShard(key);
+            if (shard != database.getShard(key)) {
+                moved++;
+                assertSame(grown.getShards().get("d"), shard, "Key " + key + " moved between old shards");
+            }
+        }
+        assertTrue(moved > keys * 0.15 && moved < keys * 0.35, "Moved " + moved + " of " + keys + " keys");
+    }
+
+    @Test
+    void rejectsBroadcastOfDataChangingStatements() {
+        Map<String, FakeDatabase> shards = shards("a", "b");
+        ShardedDatabase database = new ShardedDatabase(shards);
+
+        assertThrows(UnsupportedOperationException.class, () -> database.query("INSERT INTO player VALUES (?)", 1));
+        assertThrows(UnsupportedOperationException.class, () -> database.query("UPDATE player SET level = 1"));
+        assertThrows(UnsupportedOperationException.class, () -> database.query("SELECT * FROM player FOR UPDATE"));
+
+        database.query("SELECT * FROM player");
+        database.query("CREATE TABLE IF NOT EXISTS player (id INT)");
+        assertEquals(2, shards.get("a").statements.size());
+        assertEquals(2, shards.get("b").statements.size());
+    }
+
+    @Test
+    void executesStatementOnAllShardsUntilFailure() {
+        Map<String, FakeDatabase> shards = shards("a", "b", "c");
+        ShardedDatabase database = new ShardedDatabase(shards);
+
+        assertTrue(database.executeOnAllShards("DELETE FROM player"));
+        shards.values().forEach(shard -> assertEquals(1, shard.count("DELETE")));
+
+        shards.get("b").failing = query -> true;
+        assertFalse(database.executeOnAllShards("DELETE FROM player"));
+        assertEquals(2, shards.get("a").count("DELETE"));
+        assertEquals(1, shards.get("c").count("DELETE"));
+    }
+
+    @Test
+    void mergesPagesOfShardsByCodePoints() {
+        Map<String, FakeDatabase> shards = shards("a", "b");
+        shards.get("a").rows = query -> List.of(FakeDatabase.row("name", "a"), FakeDatabase.row("name", "\uD83D\uDE00"));
+        shards.get("b").rows = query -> List.of(FakeDatabase.row("name", "B"), FakeDatabase.row("name", "\uFFFD"));
+        DatabaseAPI databaseAPI = new DatabaseAPI(null, Runnable::run);
+        databaseAPI.setup();
+        databaseAPI.addDatabase("db", new ShardedDatabase(shards));
+
+        List<NamedItem> page = databaseAPI.findPage("db", NamedItem.class, null, 3);
+
+        assertEquals(List.of("B", "a", "\uFFFD"), page.stream().map(item -> item.name).toList());
+    }
+
+    @Test
+    void mergesPagesOfShardsByUnsignedUuids() {
+        UUID after = new UUID(0, 1);
+        UUID low = new UUID(1, 0);
+        UUID middle = new UUID(Long.MAX_VALUE, 0);
+        UUID high = new UUID(-1, 0);
+        Map<String, FakeDatabase> shards = shards("a", "b");
+        shards.get("a").rows = query -> List.of(FakeDatabase.row("id", middle));
+        shards.get("b").rows = query -> List.of(FakeDatabase.row("id", low), FakeDatabase.row("id", high));
+        DatabaseAPI databaseAPI = new DatabaseAPI(null, Runnable::run);
+        databaseAPI.setup();
+        databaseAPI.addDatabase("db", new ShardedDatabase(shards));
+
+        List<UuidItem> page = databaseAPI.findPage("db", UuidItem.class, after, 2);
+
+        assertEquals(List.of(low, middle), page.stream().map(item -> item.id).toList());
+        assertTrue(shards.get("a").statements.get(0).endsWith("[" + after + ", 2]"), shards.get("a").statements.get(0));
+    }
+
+    private static Map<String, FakeDatabase> shards(String... names) {
+        Map<String, FakeDatabase> shards = new LinkedHashMap<>();
+        for (String name : names) {
+            shards.put(name, new FakeDatabase());
+        }
+        return shards;
+    }
+
+    @DatabaseEntity
+    static class NamedItem {
+
+        @Column
+        @PrimaryKey
+        private String name;
+
+    }
+
+    @DatabaseEntity
+    static class UuidItem {
+
+        @Column
+        @PrimaryKey
+        private UUID id;
+
+    }
+
+}
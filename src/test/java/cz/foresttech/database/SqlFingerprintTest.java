@@ -0,0 +1,48 @@
+package cz.foresttech.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SqlFingerprintTest {
+
+    @Test
+    void replacesLiterals() {
+        assertEquals("SELECT * FROM player WHERE name = ? AND level > ?",
+                SqlFingerprint.of("SELECT * FROM player WHERE name = 'Steve' AND level > 10"));
+    }
+
+    @Test
+    void skipsEscapedQuotesInLiterals() {
+        assertEquals("UPDATE note SET text = ? WHERE id = ?",
+                SqlFingerprint.of("UPDATE note SET text = 'it''s done' WHERE id = ?"));
+    }
+
+    @Test
+    void replacesDecimalNumbers() {
+        assertEquals("SELECT ? * price FROM item", SqlFingerprint.of("SELECT 1.25 * price FROM item"));
+    }
+
+    @Test
+    void keepsDigitsOfIdentifiers() {
+        assertEquals("SELECT col1, \"table2\".x FROM table2", SqlFingerprint.of("SELECT col1, \"table2\".x FROM table2"));
+    }
+
+    @Test
+    void collapsesPlaceholderLists() {
+        assertEquals(SqlFingerprint.of("DELETE FROM item WHERE id IN (?, ?, ?)"),
+                SqlFingerprint.of("DELETE FROM item WHERE id IN (?,?)"));
+        assertEquals("DELETE FROM item WHERE id IN (?, ...)", SqlFingerprint.of("DELETE FROM item WHERE id IN (1, 2, 3)"));
+    }
+
+    @Test
+    void collapsesWhitespace() {
+        assertEquals("SELECT * FROM item WHERE id = ?", SqlFingerprint.of("  SELECT *\n\tFROM   item\nWHERE id = ?  "));
+    }
+
+    @Test
+    void handlesNull() {
+        assertEquals("", SqlFingerprint.of(null));
+    }
+
+}
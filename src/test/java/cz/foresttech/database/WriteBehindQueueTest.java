@@ -0,0 +1,208 @@
+package cz.foresttech.database;
+
+import cz.foresttech.database.annotation.Column;
+import cz.foresttech.database.annotation.DatabaseEntity;
+import cz.foresttech.database.annotation.PrimaryKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBehindQueueTest {
+
+    private DatabaseAPI databaseAPI;
+    private FakeDatabase database;
+
+    @BeforeEach
+    void setUp() {
+        databaseAPI = new DatabaseAPI(null, Runnable::run);
+        databaseAPI.setup();
+        database = new FakeDatabase();
+        databaseAPI.addDatabase("db", database);
+        databaseAPI.enableWriteBehind(1000, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.failing = query -> false;
+        database.beforeQuery = query -> {
+        };
+        databaseAPI.disableWriteBehind();
+    }
+
+    @Test
+    void coalescesWritesOfTheSameRow() {
+        Account account = new Account(1, 10);
+        databaseAPI.insertOrUpdateAsync("db", account);
+        account.balance = 20;
+        databaseAPI.insertOrUpdateAsync("db", account);
+        databaseAPI.insertOrUpdateAsync("db", new Account(2, 5));
+        assertEquals(0, database.count("INSERT"));
+
+        databaseAPI.flushWriteBehind();
+
+        assertEquals(2, database.count("INSERT"));
+        assertTrue(database.statements.get(0).endsWith("[1, 20]"), database.statements.get(0));
+        databaseAPI.flushWriteBehind();
+        assertEquals(2, database.count("INSERT"));
+    }
+
+    @Test
+    void flushesOnceTheQueueIsFull() {
+        databaseAPI.enableWriteBehind(1000, 2);
+        databaseAPI.insertOrUpdateAsync("db", new Account(1, 10));
+        assertEquals(0, database.count("INSERT"));
+
+        databaseAPI.insertOrUpdateAsync("db", new Account(2, 10));
+
+        assertEquals(2, database.count("INSERT"));
+    }
+
+    @Test
+    void deleteDropsPendingWrite() {
+        Account account = new Account(1, 10);
+        databaseAPI.insertOrUpdateAsync("db", account);
+
+        databaseAPI.delete("db", account);
+        databaseAPI.flushWriteBehind();
+
+        assertEquals(0, database.count("INSERT"));
+        assertEquals(1, database.count("DELETE"));
+    }
+
+    @Test
+    void failedFlushIsQueuedAgain() {
+        database.failing = query -> query.startsWith("INSERT");
+        databaseAPI.insertOrUpdateAsync("db", new Account(1, 10));
+        databaseAPI.flushWriteBehind();
+        assertEquals(1, database.count("INSERT"));
+
+        database.failing = query -> false;
+        databaseAPI.flushWriteBehind();
+
+        assertEquals(2, database.count("INSERT"));
+        databaseAPI.flushWriteBehind();
+        assertEquals(2, database.count("INSERT"));
+    }
+
+    @Test
+    void deleteWaitsForFlushOfTheRow() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        database.beforeQuery = blockInserts(flushing, release);
+        Account account = new Account(1, 10);
+        databaseAPI.insertOrUpdateAsync("db", account);
+
+        Thread flush = new Thread(databaseAPI::flushWriteBehind);
+        flush.start();
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+        Thread delete = new Thread(() -> databaseAPI.delete("db", account));
+        delete.start();
+        delete.join(200);
+        assertTrue(delete.isAlive(), "Delete has to wait for the flush of the row");
+        assertEquals(0, database.count("DELETE"));
+
+        release.countDown();
+        flush.join(5000);
+        delete.join(5000);
+        assertFalse(delete.isAlive());
+        assertTrue(database.statements.get(0).startsWith("INSERT"));
+        assertTrue(database.statements.get(1).startsWith("DELETE"));
+    }
+
+    @Test
+    void failedFlushDoesNotRestoreDeletedRow() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        database.beforeQuery = blockInserts(flushing, release);
+        database.failing = query -> query.startsWith("INSERT");
+        Account account = new Account(1, 10);
+        databaseAPI.insertOrUpdateAsync("db", account);
+
+        Thread flush = new Thread(databaseAPI::flushWriteBehind);
+        flush.start();
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        Thread delete = new Thread(() -> databaseAPI.delete("db", account));
+        delete.start();
+        delete.join(200);
+
+        release.countDown();
+        flush.join(5000);
+        delete.join(5000);
+        database.failing = query -> false;
+        databaseAPI.flushWriteBehind();
+
+        assertEquals(1, database.count("INSERT"));
+        assertEquals(1, database.count("DELETE"));
+    }
+
+    @Test
+    void synchronousWriteIsNotOverwrittenByFailedFlush() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        database.beforeQuery = blockInserts(flushing, release);
+        database.failing = query -> query.startsWith("INSERT") && Thread.currentThread().getName().equals("flush");
+        databaseAPI.insertOrUpdateAsync("db", new Account(1, 10));
+
+        Thread flush = new Thread(databaseAPI::flushWriteBehind, "flush");
+        flush.start();
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        Thread write = new Thread(() -> databaseAPI.insertOrUpdate("db", new Account(1, 30)));
+        write.start();
+        write.join(200);
+        assertEquals(1, database.count("INSERT"));
+
+        release.countDown();
+        flush.join(5000);
+        write.join(5000);
+        databaseAPI.flushWriteBehind();
+
+        assertEquals(2, database.count("INSERT"));
+        assertTrue(database.statements.get(1).endsWith("[1, 30]"), database.statements.get(1));
+    }
+
+    /**
+     * Blocks the first insert until released, so other threads can act while a flush is in flight.
+     */
+    private static Consumer<String> blockInserts(CountDownLatch flushing, CountDownLatch release) {
+        return query -> {
+            if (!query.startsWith("INSERT") || flushing.getCount() == 0) {
+                return;
+            }
+            flushing.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    @DatabaseEntity
+    static class Account {
+
+        @Column
+        @PrimaryKey
+        private int id;
+        @Column
+        private int balance;
+
+        Account() {
+        }
+
+        Account(int id, int balance) {
+            this.id = id;
+            this.balance = balance;
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package cz.foresttech.database.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    private static final long LAST_BUCKET_HIGHEST_VALUE = (1L << 41) - 1;
+
+    @Test
+    void reportsSmallValuesExactly() {
+        for (long value = 0; value < 16; value++) {
+            assertEquals(value, bucketHighestValue(value));
+        }
+    }
+
+    @Test
+    void bucketBoundsContainValueWithinRelativeError() {
+        long previous = 0;
+        for (long value = 16; value < 1L << 40; value += Math.max(1, value / 7)) {
+            long highest = bucketHighestValue(value);
+            assertTrue(highest >= value, "Bucket of " + value + " ends at " + highest);
+            assertTrue(highest - value < value / 16 + 1, "Bucket of " + value + " ends at " + highest);
+            assertTrue(highest >= previous, "Buckets are not ordered at " + value);
+            previous = highest;
+        }
+    }
+
+    @Test
+    void bucketsEndRightBeforeTheNextOne() {
+        for (int exponent = 4; exponent < 40; exponent++) {
+            long start = 1L << exponent;
+            long width = 1L << (exponent - 4);
+            for (long bucketStart = start; bucketStart < 2 * start; bucketStart += width) {
+                assertEquals(bucketStart + width - 1, bucketHighestValue(bucketStart));
+                assertEquals(bucketStart + width - 1, bucketHighestValue(bucketStart + width - 1));
+            }
+        }
+    }
+
+    @Test
+    void countsHugeValuesInLastBucket() {
+        assertEquals(LAST_BUCKET_HIGHEST_VALUE, bucketHighestValue(1L << 41));
+        assertEquals(LAST_BUCKET_HIGHEST_VALUE, bucketHighestValue(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    void recordsNegativeValuesAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getPercentile(100));
+    }
+
+    @Test
+    void percentilesAreCappedByMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50_500.0, histogram.getMean());
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 50_000 && median < 50_000 + 50_000 / 16 + 1, "Median " + median);
+        assertEquals(100_000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    /**
+     * Reads the upper bound of the bucket of a value as the median of that value and a larger one
+     * in the last bucket, which is not capped by the maximum.
+     */
+    private static long bucketHighestValue(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE);
+        return histogram.getPercentile(50);
+    }
+
+}